@@ -0,0 +1,26 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event covering one actor acting. Only a sample of acts are recorded, see Simulator.actSamplePeriod,
+ * so the time taken to act by each species can be compared without recording every actor of every step.
+ *
+ * @author Matthew Maglennon
+ */
+
+@Name("fishsim.Act")
+@Label("Act")
+@Category("Fish Simulator")
+@Description("A sampled actor acting")
+@StackTrace(false)
+public class ActEvent extends jdk.jfr.Event
+{
+	@Label("Step")
+	int step;
+
+	@Label("Species")
+	String species;
+}
@@ -0,0 +1,92 @@
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Guards against allocation creeping back into the stepping path. Runs a seeded simulation headless and fails,
+ * with a non-zero exit status, if the mean bytes allocated per step by the stepping thread goes over a budget.
+ * Phases can be given budgets of their own, and the bytes each phase allocates are always reported.
+ * Only the stepping thread is counted, see SimulationMetrics.recordPhase.
+ *
+ * Arguments are name=value pairs, each optional:
+ *   size=150x180          the ocean size
+ *   steps=200             steps measured, after the warmup
+ *   warmup=100            steps run before measuring, so the JIT compiler has settled
+ *   seed=2010
+ *   budget=430000         the most bytes a step may allocate on average, stats included
+ *   budget.PHASE=N        the most bytes a phase may allocate per step on average, for example budget.act=0
+ *
+ * @author Matthew Maglennon
+ */
+
+public class AllocationBudgetCheck
+{
+	public static final long DEFAULT_BUDGET = 430000; //Bytes per step, a little over the 415219 the default scenario allocates
+
+	public static void main(String[] args)
+	{
+		String size = "150x180";
+		int steps = 200;
+		int warmup = 100;
+		long seed = 2010;
+		long budget = DEFAULT_BUDGET;
+		Map<StepPhase, Long> phaseBudgets = new HashMap<StepPhase, Long>();
+		for(String arg : args)
+		{
+			int equals = arg.indexOf('=');
+			if(equals < 0) throw new IllegalArgumentException("Expected name=value, got " + arg);
+			String name = arg.substring(0, equals);
+			String value = arg.substring(equals + 1);
+			if(name.equals("size")) size = value;
+			else if(name.equals("steps")) steps = Integer.parseInt(value);
+			else if(name.equals("warmup")) warmup = Integer.parseInt(value);
+			else if(name.equals("seed")) seed = Long.parseLong(value);
+			else if(name.equals("budget")) budget = Long.parseLong(value);
+			else if(name.startsWith("budget.")) phaseBudgets.put(StepPhase.valueOf(name.substring(7).toUpperCase(Locale.ROOT)), Long.parseLong(value));
+			else throw new IllegalArgumentException("Unknown argument " + name);
+		}
+
+		int x = size.indexOf('x');
+		Randomizer.setSeed(seed);
+		Simulator.enableMetrics = true;
+		Simulator sim = new Simulator(Integer.parseInt(size.substring(0, x)), Integer.parseInt(size.substring(x + 1)), OceanType.DENSE, true);
+		SimulationMetrics metrics = sim.getMetrics();
+		sim.setUp();
+		for(int s = 0; s < warmup && sim.isViable(); s++)
+		{
+			sim.step();
+		}
+
+		long phaseBefore[] = new long[StepPhase.values().length];
+		for(StepPhase phase : StepPhase.values())
+		{
+			phaseBefore[phase.ordinal()] = metrics.getAllocatedBytes(phase);
+		}
+		long before = SimulationMetrics.allocatedBytes();
+		int measured = 0;
+		while(measured < steps && sim.isViable())
+		{
+			sim.step();
+			measured++;
+		}
+		long perStep = (SimulationMetrics.allocatedBytes() - before) / Math.max(1, measured);
+
+		boolean failed = perStep > budget;
+		System.out.println(String.format("%s, %d steps: %d bytes per step, budget %d%s", size, measured, perStep, budget, perStep > budget ? " EXCEEDED" : ""));
+		for(StepPhase phase : StepPhase.values())
+		{
+			long phasePerStep = (metrics.getAllocatedBytes(phase) - phaseBefore[phase.ordinal()]) / Math.max(1, measured);
+			Long phaseBudget = phaseBudgets.get(phase);
+			boolean over = phaseBudget != null && phasePerStep > phaseBudget;
+			failed |= over;
+			System.out.println(String.format("  %-22s %10d bytes per step%s", phase.getLabel(), phasePerStep,
+				phaseBudget == null ? "" : ", budget " + phaseBudget + (over ? " EXCEEDED" : "")));
+		}
+		if(measured < steps)
+		{
+			System.out.println("The ocean stopped being viable after " + measured + " steps");
+			failed = true;
+		}
+		if(failed) System.exit(1);
+	}
+}
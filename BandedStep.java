@@ -0,0 +1,114 @@
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Acts the fish of an ocean band by band of rows, rather than in the order of the actor list, so that a step comes out the same
+ * however the ocean is split between processes, see ShardWorker. Simulator steps this way when bandedSteps is set.
+ *
+ * The ocean is split into bands of BAND_ROWS rows, the last band taking any rows left over. Each step every even band acts,
+ * then every odd band, the fish of a band acting row by row and drawing from a random object seeded for that band and step.
+ * Fish reach no more than a few rows beyond their own in a step, and a band is at least twice that, see ShardWorker.haloRows,
+ * so bands acting in the same half of a step cannot affect each other and may be stepped in any order or at once.
+ *
+ * The oceans must draw from the random object of the banded step, see Ocean.setRandom, and must be separate oceans that fish
+ * act one at a time in, so neither an ocean updated in place nor a ConcurrentOcean.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class BandedStep
+{
+	public static final int BAND_ROWS = 16; //The number of rows in a band, the last band of the ocean taking any rows left over
+
+	private int height; //The height of the whole ocean
+	private int bandCount; //The number of bands in the whole ocean
+	private long seed; //Mixed with the step and band to seed each band's random object
+	private Random rand = new Random(); //Reseeded for each band as it acts, so that a band draws the same numbers whoever steps it
+
+	/**
+	 * @param height The height of the whole ocean.
+	 * @param seed The seed the bands' seeds are mixed from.
+	 */
+	public BandedStep(int height, long seed)
+	{
+		this.height = height;
+		this.seed = seed;
+		bandCount = Math.max(1, height / BAND_ROWS);
+	}
+
+	/**
+	 * @return The random object the oceans' fish must draw from.
+	 */
+	public Random getRandom()
+	{
+		return rand;
+	}
+
+	/**
+	 * @return The number of bands in the whole ocean.
+	 */
+	public int getBandCount()
+	{
+		return bandCount;
+	}
+
+	/**
+	 * @return The first row of a band in the whole ocean, or the height of the ocean for the band after the last.
+	 */
+	public int bandStart(int band)
+	{
+		return (band >= bandCount) ? height : band * BAND_ROWS;
+	}
+
+	/**
+	 * Acts every band of an ocean that is not split, the even bands and then the odd.
+	 * @param currentOcean The current ocean.
+	 * @param updatedOcean The updated ocean.
+	 * @param newFish A list of actors in which to store new born fish.
+	 * @param step The step being run.
+	 */
+	public void act(Ocean currentOcean, Ocean updatedOcean, List<Actor> newFish, long step)
+	{
+		for(int parity = 0; parity < 2; parity++)
+		{
+			for(int band = parity; band < bandCount; band += 2)
+			{
+				actBand(band, currentOcean, updatedOcean, 0, newFish, step);
+			}
+		}
+	}
+
+	/**
+	 * Acts every living fish of a band that has not yet acted, row by row, drawing from the band's random object.
+	 * @param band The band.
+	 * @param currentOcean The current ocean.
+	 * @param updatedOcean The updated ocean.
+	 * @param rowOffset The row of the whole ocean of row 0 of the oceans, which may hold only part of it.
+	 * @param newFish A list of actors in which to store new born fish.
+	 * @param step The step being run.
+	 */
+	public void actBand(int band, Ocean currentOcean, Ocean updatedOcean, int rowOffset, List<Actor> newFish, long step)
+	{
+		rand.setSeed(bandSeed(band, step));
+		int width = currentOcean.getWidth();
+		for(int row = bandStart(band) - rowOffset; row < bandStart(band + 1) - rowOffset; row++)
+		{
+			for(int col = 0; col < width; col++)
+			{
+				Fish fish = currentOcean.fishAt(row, col);
+				if(fish != null && fish.isAlive()) fish.act(currentOcean, updatedOcean, newFish);
+			}
+		}
+	}
+
+	/**
+	 * @return The seed of a band's random object in a step, mixed as OceanSeeder mixes its bands' seeds.
+	 */
+	private long bandSeed(int band, long step)
+	{
+		long mixed = seed + (step * bandCount + band + 1) * 0x9E3779B97F4A7C15L;
+		mixed = (mixed ^ (mixed >>> 30)) * 0xBF58476D1CE4E5B9L;
+		mixed = (mixed ^ (mixed >>> 27)) * 0x94D049BB133111EBL;
+		return mixed ^ (mixed >>> 31);
+	}
+}
@@ -0,0 +1,138 @@
+import java.util.Arrays;
+
+/**
+ * A packed grid of bits, one per ocean square, used to record which squares hold something.
+ * The grid is padded by one square all round, so the 8 neighbours of any square can be read
+ * with a few shifts and masks and no bounds checks.
+ *
+ * Neighbour masks use bit d for the neighbour in direction d, see Ocean.DIRECTION_ROW and Ocean.DIRECTION_COL:
+ * 0 1 2 above, 3 and 4 either side, 5 6 7 below.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class Bitboard
+{
+	private int height; //Height of the ocean, not including padding
+	private int width; //Width of the ocean, not including padding
+	private int stride; //Words per row, including padding and a spare word so two words can always be read
+	private long words[];
+
+	/**
+	 * Create an empty bitboard for an ocean.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 */
+	public Bitboard(int height, int width)
+	{
+		this.height = height;
+		this.width = width;
+		stride = ((width + 2) >> 6) + 2;
+		words = new long[(height + 2) * stride];
+	}
+
+	/**
+	 * Create a bitboard with the bit set for every padding square, so squares off the edge of the ocean look full.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 * @return The new bitboard.
+	 */
+	public static Bitboard outside(int height, int width)
+	{
+		Bitboard board = new Bitboard(height, width);
+		for(int row = -1; row <= height; row++)
+		{
+			for(int col = -1; col <= width; col++)
+			{
+				if(row < 0 || row == height || col < 0 || col == width) board.set(row, col);
+			}
+		}
+		return board;
+	}
+
+	public boolean get(int row, int col)
+	{
+		int bit = col + 1;
+		return (words[(row + 1) * stride + (bit >> 6)] & (1L << bit)) != 0;
+	}
+
+	public void set(int row, int col)
+	{
+		int bit = col + 1;
+		words[(row + 1) * stride + (bit >> 6)] |= 1L << bit;
+	}
+
+	public void clear(int row, int col)
+	{
+		int bit = col + 1;
+		words[(row + 1) * stride + (bit >> 6)] &= ~(1L << bit);
+	}
+
+	/**
+	 * Clears every bit.
+	 */
+	public void clear()
+	{
+		Arrays.fill(words, 0);
+	}
+
+	/**
+	 * @return The number of bits set, including any padding.
+	 */
+	public int count()
+	{
+		int count = 0;
+		for(long word : words)
+		{
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * @return True if no bit is set in a row, including its padding.
+	 */
+	public boolean isRowEmpty(int row)
+	{
+		int start = (row + 1) * stride;
+		for(int i = start; i < start + stride; i++)
+		{
+			if(words[i] != 0) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the bits of the 8 neighbours of a square.
+	 * @return A mask with bit d set if the neighbour in direction d is set.
+	 */
+	public int neighbours(int row, int col)
+	{
+		//Padded rows row-1..row+1 are board rows row..row+2, padded cols col-1..col+1 start at bit col
+		int above = threeBits(row, col);
+		int middle = threeBits(row + 1, col);
+		int below = threeBits(row + 2, col);
+		return above | ((middle & 1) << 3) | ((middle & 4) << 2) | (below << 5);
+	}
+
+	/**
+	 * Reads three bits of a padded row starting at the given bit, which may span two words.
+	 */
+	private int threeBits(int paddedRow, int bit)
+	{
+		int i = paddedRow * stride + (bit >> 6);
+		int shift = bit & 63;
+		//The second word is shifted in two parts so that a shift of 64, which Java treats as 0, never happens
+		return (int) (((words[i] >>> shift) | ((words[i + 1] << 1) << (63 - shift))) & 7);
+	}
+
+	public int getHeight()
+	{
+		return height;
+	}
+
+	public int getWidth()
+	{
+		return width;
+	}
+}
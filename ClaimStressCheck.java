@@ -0,0 +1,229 @@
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Checks that fish acting at once in a ConcurrentOcean never share a square, failing with a non-zero exit status if they do.
+ * First several threads race to claim the squares of a small ocean, each with fish of its own, and every fish a thread
+ * claimed a square for must be the one in that square. Then a simulation of concurrent oceans is run with fish acting at once,
+ * and after every step each living fish must be alone in its square and every fish in the ocean must be a living actor.
+ * Last the same simulation is run through the intent pipeline with young spilling two squares away, see Fish.spillBirths,
+ * on one thread and then on all of them. The two runs must end with the same fish in the same squares, and the fish must only
+ * ever draw from their own random objects, never from the shared one, which would make them depend on the order they act in.
+ *
+ * Arguments are name=value pairs, each optional:
+ *   threads=4             threads racing, and Workers threads running the simulation
+ *   rounds=200            rounds of racing claims
+ *   size=150x180          the size of the simulated ocean
+ *   steps=300             steps simulated
+ *   seed=2010
+ *
+ * @author Matthew Maglennon
+ */
+
+public class ClaimStressCheck
+{
+	private static final int RACE_SIZE = 32; //The racing ocean is this many squares high and wide, small so that claims collide
+	private static final int CLAIMS = 4096; //Claims each thread makes per round
+
+	public static void main(String[] args)
+	{
+		int threads = 4;
+		int rounds = 200;
+		String size = "150x180";
+		int steps = 300;
+		long seed = 2010;
+		for(String arg : args)
+		{
+			int equals = arg.indexOf('=');
+			if(equals < 0) throw new IllegalArgumentException("Expected name=value, got " + arg);
+			String name = arg.substring(0, equals);
+			String value = arg.substring(equals + 1);
+			if(name.equals("threads")) threads = Integer.parseInt(value);
+			else if(name.equals("rounds")) rounds = Integer.parseInt(value);
+			else if(name.equals("size")) size = value;
+			else if(name.equals("steps")) steps = Integer.parseInt(value);
+			else if(name.equals("seed")) seed = Long.parseLong(value);
+			else throw new IllegalArgumentException("Unknown argument " + name);
+		}
+
+		Workers.setThreads(threads);
+		int failures = race(threads, rounds, seed);
+		System.out.println(String.format("%d threads, %d rounds of racing claims: %d squares shared", threads, rounds, failures));
+		int x = size.indexOf('x');
+		int simulated = simulate(Integer.parseInt(size.substring(0, x)), Integer.parseInt(size.substring(x + 1)), steps, seed);
+		System.out.println(String.format("%s, %d steps with fish acting at once: %d fish out of place", size, steps, simulated));
+		Workers.setThreads(1);
+		long alone[] = spill(Integer.parseInt(size.substring(0, x)), Integer.parseInt(size.substring(x + 1)), steps, seed);
+		Workers.setThreads(threads);
+		long together[] = spill(Integer.parseInt(size.substring(0, x)), Integer.parseInt(size.substring(x + 1)), steps, seed);
+		boolean repeated = alone[0] == together[0];
+		long sharedDraws = alone[1] + together[1];
+		System.out.println(String.format("%s, %d steps deciding at once with young spilling: checksum %d on 1 thread, %d on %d%s, %d steps drawing from the shared random object",
+			size, steps, alone[0], together[0], threads, repeated ? "" : " DIFFERENT", sharedDraws));
+		if(failures + simulated + sharedDraws > 0 || !repeated) System.exit(1);
+	}
+
+	/**
+	 * Races threads to claim squares, round after round.
+	 * @return The number of claims that succeeded for a square some other fish ended up in.
+	 */
+	private static int race(int threads, int rounds, long seed)
+	{
+		ConcurrentOcean ocean = new ConcurrentOcean(RACE_SIZE, RACE_SIZE);
+		Location squares[] = new Location[RACE_SIZE * RACE_SIZE];
+		for(int i = 0; i < squares.length; i++)
+		{
+			squares[i] = new Location(i / RACE_SIZE, i % RACE_SIZE);
+		}
+		int failures = 0;
+		for(int round = 0; round < rounds; round++)
+		{
+			ocean.clearFish();
+			CountDownLatch start = new CountDownLatch(threads);
+			List<Claimer> claimers = new ArrayList<Claimer>();
+			for(int t = 0; t < threads; t++)
+			{
+				claimers.add(new Claimer(ocean, squares, new Random(seed + round * threads + t), start));
+			}
+			Workers.runAll(claimers);
+
+			int claimed = 0;
+			for(Claimer claimer : claimers)
+			{
+				for(Fish fish : claimer.claimed)
+				{
+					if(ocean.getFishAt(fish.getLocation()) != fish) failures++;
+				}
+				claimed += claimer.claimed.size();
+			}
+			int occupied = 0;
+			for(Location square : squares)
+			{
+				if(ocean.getFishAt(square) != null) occupied++;
+			}
+			if(occupied != claimed) failures += Math.abs(claimed - occupied);
+		}
+		return failures;
+	}
+
+	/**
+	 * Runs a seeded simulation of concurrent oceans, checking the ocean after every step.
+	 * @return The number of fish found sharing a square, missing from the ocean or in the ocean but not living actors.
+	 */
+	private static int simulate(int height, int width, int steps, long seed)
+	{
+		Randomizer.setSeed(seed);
+		Simulator.enableMetrics = false;
+		Simulator sim = new Simulator(height, width, OceanType.CONCURRENT, true);
+		sim.setUp();
+		int failures = 0;
+		for(int s = 0; s < steps && sim.isViable(); s++)
+		{
+			sim.step();
+			Ocean ocean = sim.getCurrentOcean();
+			Map<Fish, Boolean> living = new IdentityHashMap<Fish, Boolean>();
+			for(Actor actor : sim.getActors())
+			{
+				if(!actor.isAlive()) continue;
+				Fish fish = (Fish) actor;
+				living.put(fish, Boolean.TRUE);
+				if(ocean.getFishAt(fish.getLocation()) != fish) failures++;
+			}
+			for(int row = 0; row < height; row++)
+			{
+				for(int col = 0; col < width; col++)
+				{
+					Fish fish = ocean.getFishAt(new Location(row, col));
+					if(fish != null && !living.containsKey(fish)) failures++;
+				}
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * Runs a seeded simulation through the intent pipeline with young spilling two squares away.
+	 * The shared random object is seeded afresh before each step, so that a step which draws more from it than the pipeline's own seed can be seen.
+	 * Steps after the 1000th are not checked, as party mode draws from it then.
+	 * @return A checksum of the species, square, age and hunger of every fish in the ocean at the end,
+	 * and the number of steps in which something other than the pipeline drew from the shared random object.
+	 */
+	private static long[] spill(int height, int width, int steps, long seed)
+	{
+		Randomizer.setSeed(seed);
+		Simulator.enableMetrics = false;
+		Simulator.intentPipeline = true;
+		Fish.spillBirths = true;
+		try
+		{
+			Simulator sim = new Simulator(height, width, OceanType.DENSE, true);
+			sim.setUp();
+			long sharedDraws = 0;
+			for(int s = 0; s < steps; s++)
+			{
+				Randomizer.setSeed(seed + s);
+				sim.step();
+				//the pipeline draws one seed a step, so the next draw is the second from the step's seed
+				Random expected = new Random(seed + s);
+				expected.nextLong();
+				if(s < 1000 && Randomizer.getRandom().nextLong() != expected.nextLong()) sharedDraws++;
+			}
+			Ocean ocean = sim.getCurrentOcean();
+			long checksum = 0;
+			for(int row = 0; row < height; row++)
+			{
+				for(int col = 0; col < width; col++)
+				{
+					Fish fish = ocean.getFishAt(new Location(row, col));
+					if(fish == null) continue;
+					long cell = (long) row * width + col;
+					checksum = checksum * 31 + (cell * 31 + Species.codeOf(fish)) * 31 * 31 + fish.age * 31 + fish.hunger;
+				}
+			}
+			return new long[] {checksum, sharedDraws};
+		}
+		finally
+		{
+			Simulator.intentPipeline = false;
+			Fish.spillBirths = false;
+		}
+	}
+
+	/**
+	 * Claims random squares with new fish, waiting for every other claimer to be ready first so that they overlap.
+	 */
+	private static class Claimer implements Callable<Void>
+	{
+		private ConcurrentOcean ocean;
+		private Location squares[];
+		private Random rand;
+		private CountDownLatch start;
+		private List<Fish> claimed = new ArrayList<Fish>(); //The fish this claimer placed
+
+		private Claimer(ConcurrentOcean ocean, Location squares[], Random rand, CountDownLatch start)
+		{
+			this.ocean = ocean;
+			this.squares = squares;
+			this.rand = rand;
+			this.start = start;
+		}
+
+		public Void call() throws InterruptedException
+		{
+			start.countDown();
+			start.await();
+			for(int c = 0; c < CLAIMS; c++)
+			{
+				Location square = squares[rand.nextInt(squares.length)];
+				Fish fish = new Herring(false, square);
+				if(ocean.claim(square, fish)) claimed.add(fish);
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lets the fish of a ConcurrentOcean act at once on the Workers threads, with no locks and no division of the ocean.
+ * Each thread takes chunks of the actor list as it runs out of work, and fish act as they would one at a time,
+ * except that a square or prey can be taken by a fish on another thread between looking and taking,
+ * which the claiming of squares and killing of prey settle, see ConcurrentOcean.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class ConcurrentActing
+{
+	private static final int CHUNK = 256; //The fish a thread takes at a time
+
+	/**
+	 * Lets every actor act.
+	 * @param actors The actors, all of them living fish at the start.
+	 * @param currentOcean Reference to the current ocean, a ConcurrentOcean.
+	 * @param updatedOcean Reference to the updated ocean, a ConcurrentOcean.
+	 * @param newActors A list of actors in which to store new born fish.
+	 */
+	public void act(List<Actor> actors, Ocean currentOcean, Ocean updatedOcean, List<Actor> newActors)
+	{
+		AtomicInteger next = new AtomicInteger();
+		List<Acting> tasks = new ArrayList<Acting>();
+		for(int t = 0; t < Math.min(Workers.getThreads(), (actors.size() + CHUNK - 1) / CHUNK); t++)
+		{
+			tasks.add(new Acting(actors, currentOcean, updatedOcean, next));
+		}
+		Workers.runAll(tasks);
+		for(Acting task : tasks)
+		{
+			newActors.addAll(task.born);
+		}
+
+		//A fish eaten while it was acting on another thread may still have moved, so take it back out
+		for(Actor a : actors)
+		{
+			if(!a.isAlive() && updatedOcean.getFishAt(a.getLocation()) == a) updatedOcean.fishLeaves(a.getLocation());
+		}
+	}
+
+	/**
+	 * Acts chunks of fish one after another until there are none left.
+	 */
+	private static class Acting implements Callable<Void>
+	{
+		private List<Actor> actors;
+		private Ocean currentOcean;
+		private Ocean updatedOcean;
+		private AtomicInteger next; //The next chunk for a thread to take
+		private List<Actor> born = new ArrayList<Actor>(); //Fish born on this thread
+
+		private Acting(List<Actor> actors, Ocean currentOcean, Ocean updatedOcean, AtomicInteger next)
+		{
+			this.actors = actors;
+			this.currentOcean = currentOcean;
+			this.updatedOcean = updatedOcean;
+			this.next = next;
+		}
+
+		public Void call()
+		{
+			for(int start = next.getAndIncrement() * CHUNK; start < actors.size(); start = next.getAndIncrement() * CHUNK)
+			{
+				int end = Math.min(actors.size(), start + CHUNK);
+				for(int i = start; i < end; i++)
+				{
+					Actor a = actors.get(i);
+					if(!a.isAlive()) continue;
+					String thoughts = a.act(currentOcean, updatedOcean, born);
+					if(thoughts != "") System.out.println(a.toString() + " says " + thoughts);
+				}
+			}
+			return null;
+		}
+	}
+}
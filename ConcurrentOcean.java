@@ -0,0 +1,140 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An ocean whose fish can act at once on several threads without locking, see ConcurrentActing.
+ * Each square's fish is held in an atomic slot, and a fish only takes a square by claiming it with compare and set,
+ * so two fish can never end up in the same square however their acts overlap. Prey is killed with Fish.kill,
+ * so a fish can only be eaten once.
+ *
+ * Only the fish in a square changes the square's plankton while fish act, so plankton needs no atomic access.
+ * The shark repulsion field and the spatial index are not kept, as they cannot be updated by several fish at once,
+ * so sharks do not avoid each other and fish sense no further than their surroundings.
+ * Fish acting in this ocean draw from a random object of their own thread rather than the shared one.
+ *
+ * Outcomes depend on how the threads' acts interleave, so seeded runs do not repeat exactly.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class ConcurrentOcean extends Ocean
+{
+	private AtomicReferenceArray<Fish> fishLayer; //The fish in each square, row by row
+	private boolean rockLayer[]; //True where a square has a rock, only changed while setting up
+	private float planktonLayer[]; //Plankton level of each square
+	private int width;
+
+	/**
+	 * Construct a concurrent ocean of a given height and width.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 */
+	public ConcurrentOcean(int height, int width)
+	{
+		super(height, width, false);
+		this.width = width;
+		fishLayer = new AtomicReferenceArray<Fish>(height * width);
+		rockLayer = new boolean[height * width];
+		planktonLayer = new float[height * width];
+		Arrays.fill(planktonLayer, INITIAL_PLANKTON);
+	}
+
+	/**
+	 * Places a fish in a square if the square is empty, in one compare and set.
+	 * @param location The location to place the fish at.
+	 * @param fish The fish.
+	 * @return True if the fish was placed, false if the square was taken or holds a rock.
+	 */
+	public boolean claim(Location location, Fish fish)
+	{
+		int i = location.getRow() * width + location.getCol();
+		return !rockLayer[i] && fishLayer.compareAndSet(i, null, fish);
+	}
+
+	/**
+	 * @return The random object of the calling thread.
+	 */
+	public Random getRandom()
+	{
+		return ThreadLocalRandom.current();
+	}
+
+	/**
+	 * Regenerates the plankton of every ocean square in the ocean.
+	 */
+	public void regeneratePlankton()
+	{
+		double total = 0;
+		for(int i = 0; i < planktonLayer.length; i++)
+		{
+			planktonLayer[i] = regenerate(planktonLayer[i]);
+			total += planktonLayer[i];
+		}
+		setTotalPlankton(total);
+	}
+
+	/**
+	 * Fish graze on several threads at once, so rather than keep the total up to date it is added up again when next needed.
+	 */
+	protected void planktonGrazed(float amount)
+	{
+		forgetTotalPlankton();
+	}
+
+	/**
+	 * Removes all fish from every ocean square in the ocean.
+	 */
+	public void clearFish()
+	{
+		for(int i = 0; i < fishLayer.length(); i++)
+		{
+			if(fishLayer.get(i) != null) fishLayer.set(i, null);
+		}
+	}
+
+	/**
+	 * Not kept, see the class comment.
+	 */
+	public void setSharkRepulsion(RepulsionField sharkRepulsion)
+	{
+	}
+
+	/**
+	 * Not kept, see the class comment.
+	 */
+	public void setSpatialIndex(SpatialIndex spatialIndex)
+	{
+	}
+
+	protected Fish fishAt(int row, int col)
+	{
+		return fishLayer.get(row * width + col);
+	}
+
+	protected void setFishAt(int row, int col, Fish fish)
+	{
+		fishLayer.set(row * width + col, fish);
+	}
+
+	protected boolean rockAt(int row, int col)
+	{
+		return rockLayer[row * width + col];
+	}
+
+	protected void setRockAt(int row, int col, boolean rock)
+	{
+		rockLayer[row * width + col] = rock;
+	}
+
+	protected float planktonAt(int row, int col)
+	{
+		return planktonLayer[row * width + col];
+	}
+
+	protected void setPlanktonAt(int row, int col, float plankton)
+	{
+		planktonLayer[row * width + col] = plankton;
+	}
+}
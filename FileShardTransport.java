@@ -0,0 +1,82 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A shard transport using files in a directory shared by all the shards.
+ * Each message is written to a temporary file and renamed into place, so a reader never sees half a message.
+ * Message files are numbered per pair of shards and deleted once read.
+ * @author Matthew Maglennon
+ *
+ */
+
+public class FileShardTransport implements ShardTransport
+{
+	private static final int POLL_MS = 1; //How long to wait between checks for a message
+
+	private File directory; //The shared directory
+	private int shard; //The index of this shard
+	private Map<Integer, Integer> sent = new HashMap<Integer, Integer>(); //Number of messages sent to each shard
+	private Map<Integer, Integer> received = new HashMap<Integer, Integer>(); //Number of messages received from each shard
+
+	/**
+	 * @param directory The directory shared by all the shards.
+	 * @param shard The index of this shard.
+	 */
+	public FileShardTransport(File directory, int shard)
+	{
+		this.directory = directory;
+		this.shard = shard;
+	}
+
+	public void send(int toShard, byte[] message) throws IOException
+	{
+		int number = next(sent, toShard);
+		File temporary = new File(directory, messageName(shard, toShard, number) + ".tmp");
+		Files.write(temporary.toPath(), message);
+		Files.move(temporary.toPath(), new File(directory, messageName(shard, toShard, number)).toPath(), StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	public byte[] receive(int fromShard) throws IOException
+	{
+		File file = new File(directory, messageName(fromShard, shard, next(received, fromShard)));
+		while(!file.exists())
+		{
+			try
+			{
+				Thread.sleep(POLL_MS);
+			}
+			catch(InterruptedException e)
+			{
+				throw new InterruptedIOException();
+			}
+		}
+		byte[] message = Files.readAllBytes(file.toPath());
+		Files.delete(file.toPath());
+		return message;
+	}
+
+	public void close()
+	{
+	}
+
+	/**
+	 * Increments and returns the message count for a shard.
+	 */
+	private int next(Map<Integer, Integer> counts, int otherShard)
+	{
+		Integer count = counts.get(otherShard);
+		count = (count == null) ? 0 : count + 1;
+		counts.put(otherShard, count);
+		return count;
+	}
+
+	private static String messageName(int from, int to, int number)
+	{
+		return from + "-" + to + "-" + number + ".msg";
+	}
+}
@@ -1,3 +1,8 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.List;
 import java.util.Random;
 
@@ -11,7 +16,18 @@ import java.util.Random;
  */
 abstract public class Fish extends OceanObject implements Actor
 {
-	private static final Random random = new Random(); //Static final random object, used in various methods to generate random integers.
+	private static final Random random = Randomizer.getRandom(); //Static final random object, used in various methods to generate random integers.
+	public static boolean spillBirths = false; //Set as true to place offspring two squares away when the squares around the parent are full
+	private static final VarHandle ALIVE = aliveHandle(); //Compares and sets isAlive, so that a fish can only be killed once
+	private static final int NURSERY_SIZE = 4; //The largest litter of any species, the nursery grows if a species has a larger one
+	private static final ThreadLocal<Location[]> nursery = new ThreadLocal<Location[]>() //The squares found for a litter, one array per acting thread
+	{
+		@Override
+		protected Location[] initialValue()
+		{
+			return new Location[NURSERY_SIZE];
+		}
+	};
 		
 	//protected references
 	protected Ocean currentOcean; //holds a reference to the ocean the fish currently exists in. Used for surroundings analysis etc.
@@ -20,17 +36,23 @@ abstract public class Fish extends OceanObject implements Actor
 	//protected instance variables
 	protected int age; //the age of the fish
 	protected int hunger; //the hunger level of the fish
+	protected int maxAge; //the age at which the fish dies of old age
+	protected boolean mature; //whether the fish is old enough to breed when it next acts, kept up to date by a LifeCycle
 	protected String thoughts; //the fishes thoughts as a string
 	protected Location location; //the fishes current location
 	protected boolean isAlive = true; //whether the fish is alive or not
+	protected ReasonForDeath reasonForDeath; //why the fish died, null while it is alive
+	protected Intent intent; //what the fish is deciding to do, null unless it is deciding an intent rather than acting
+	protected Random carrying; //the random object the fish carries out its decision with, null unless it is carrying one out
+	protected int moveStamp; //the ocean's move stamp when the fish last moved or was born, see movedThisStep
 
 	/**
 	 * Constructor for objects of class Fish. Performs construction applicable to all subclasses of fish.
-	 * Only subclasses can call Fish constructors.
+	 * Only subclasses can call Fish constructors. The maximum age is left for the caller to set, see setRandomMaxAge,
+	 * so that it is drawn from whichever random object the caller is using.
 	 */
 	protected Fish()
 	{
-		setRandomMaxAge();
 	}
 	
 	/**
@@ -47,6 +69,19 @@ abstract public class Fish extends OceanObject implements Actor
 		this.location = location;
 	}
 	
+	/**
+	 * Creates a fish of random age, drawing from the given random object rather than the shared one
+	 * so that fish can be created on several threads at once and still come out the same for the same seed.
+	 * @param rand The random object to draw the fish's maximum age and age from.
+	 * @param location The location of the fish.
+	 */
+	protected Fish(Random rand, Location location)
+	{
+		setRandomMaxAge(rand);
+		setAge(rand.nextInt(getMaxAge()));
+		this.location = location;
+	}
+	
 	/**
 	 * Sets the age variable of a fish to the input.
 	 * @param age Desired age of the fish.
@@ -54,6 +89,7 @@ abstract public class Fish extends OceanObject implements Actor
 	protected void setAge(int age)
 	{
 		this.age = age;
+		mature = age >= getBreedingAge() - 1;
 	}
 	
 	/**
@@ -62,7 +98,16 @@ abstract public class Fish extends OceanObject implements Actor
 	 */
 	protected void setRandomMaxAge()
 	{
-		float randomFloat = random.nextInt(4)+1;
+		setRandomMaxAge(random);
+	}
+	
+	/**
+	 * Gives the fish a random maximum age variable, drawing from the given random object.
+	 * @param rand The random object to draw from.
+	 */
+	protected void setRandomMaxAge(Random rand)
+	{
+		float randomFloat = rand.nextInt(4)+1;
 		int randomMaxAge = Math.round(getAverageMaxAge() * ((randomFloat/10) + 0.8f));
 		setMaxAge(randomMaxAge);
 	}
@@ -70,6 +115,7 @@ abstract public class Fish extends OceanObject implements Actor
 	/**
 	 * The fish is told to act. All fish perform the same types of actions.
 	 * They increase in age, increase in hunger, attempt to breed and decided where to move.
+	 * Dying of old age and starvation is left to a LifeCycle, which kills the fish before it acts in the step it would die.
 	 * @param currentOcean Reference to the current ocean.
 	 * @param updatedOcean Reference to the updated ocean.
 	 * @param newFish A list of actors in which to store new born fish.
@@ -84,40 +130,169 @@ abstract public class Fish extends OceanObject implements Actor
 		age();
 		increaseHunger();		
 		breed(newFish);
-		decideOnMovement(lookAround());
+		decideOnMovement();
 		
     	return thoughts;
     }
 	
 	/**
-	 * A fish looks around and returns its adjacent locations
-	 * @return A list of locations adjacent to the fishes location.
+	 * The fish decides what to do in a step without changing the ocean or any other fish, so that every fish can decide
+	 * at once from the same ocean. It ages, grows hungrier and decides whether to breed, what to eat and where to move,
+	 * and its decision is carried out by carryOut once every fish has decided. See IntentPipeline.
+	 * @param ocean The current ocean, which is only read.
+	 * @param decision Set to what the fish decides, reset with the random object the fish is to draw from.
+	 */
+	final public void intend(Ocean ocean, Intent decision)
+	{
+		thoughts = "";
+		currentOcean = ocean;
+		updatedOcean = ocean;
+		intent = decision;
+		
+		age();
+		increaseHunger();
+		intent.births = calculateBirths();
+		Location target = findLocationOfFood();
+		if(target == null) target = chooseNextLocation();
+		intent.target = target;
+		intent.thoughts = thoughts;
+		
+		intent = null;
+	}
+	
+	/**
+	 * Carries out what the fish decided in intend, as far as the fish that carried out theirs first allow.
+	 * If its prey has already been eaten, or the square it wanted has been taken, the fish stays where it is or,
+	 * if its own square has been taken too, moves to any free square around it. If there is none it dies of overcrowding.
+	 * Its young are then born around where it ends up. The fish draws from the random object of its decision, reseeded by IntentPipeline.
+	 * @param decision What the fish decided.
+	 * @param currentOcean Reference to the current ocean.
+	 * @param updatedOcean Reference to the updated ocean.
+	 * @param newFish A list of actors in which to store new born fish.
+	 */
+	final public void carryOut(Intent decision, Ocean currentOcean, Ocean updatedOcean, List<Actor> newFish)
+	{
+		this.currentOcean = currentOcean;
+		this.updatedOcean = updatedOcean;
+		carrying = decision.rand;
+		
+		Location target = decision.target;
+		Fish prey = decision.prey;
+		if(prey != null)
+		{
+			if(prey.kill(ReasonForDeath.EATEN))
+			{
+				decreaseHunger(decision.nourishment);
+				//The prey may already have moved into the updated ocean
+				if(updatedOcean.getFishAt(prey.getLocation()) == prey) updatedOcean.fishLeaves(prey.getLocation());
+			}
+			else target = null;
+		}
+		if(decision.grazing > 0)
+		{
+			currentOcean.reducePlankton(location, decision.grazing);
+			if(updatedOcean != currentOcean) updatedOcean.reducePlankton(location, decision.grazing);
+			decreaseHunger(decision.nourishment);
+		}
+		
+		if(target == null || !updatedOcean.isLocationEmpty(target))
+		{
+			target = updatedOcean.isLocationEmpty(location) ? location : updatedOcean.freeAdjacentLocation(location, rand());
+		}
+		if(target != null)
+		{
+			Location from = location;
+			move(target);
+			giveBirth(decision.births, newFish);
+			settle(from);
+		}
+		else die(ReasonForDeath.OVERCROWDING);
+		carrying = null;
+	}
+	
+	/**
+	 * Called once a decided move has been carried out, for fish that tell others where they went.
+	 * @param from Where the fish moved from.
 	 */
-	protected List<Location> lookAround()
+	protected void settle(Location from)
 	{
-		return currentOcean.adjacentLocations(location);
+	}
+	
+	/**
+	 * @return The random object the fish draws from while acting, deciding or carrying out a decision.
+	 */
+	protected Random rand()
+	{
+		if(intent != null) return intent.rand;
+		return carrying != null ? carrying : updatedOcean.getRandom();
+	}
+	
+	/**
+	 * The fish eats another fish, or if it is deciding an intent, decides to.
+	 * A fish that has already been eaten, perhaps by a fish acting at the same time, gives no nourishment.
+	 * @param dinner The fish to eat.
+	 * @param nourishment How much eating it takes off the fish's hunger.
+	 */
+	protected void eat(Fish dinner, int nourishment)
+	{
+		if(intent != null)
+		{
+			intent.prey = dinner;
+			intent.nourishment = nourishment;
+			return;
+		}
+		if(!dinner.kill(ReasonForDeath.EATEN)) return;
+		decreaseHunger(nourishment);
+		//In an ocean updated in place the prey must make way for the fish eating it
+		if(currentOcean == updatedOcean && currentOcean.getFishAt(dinner.location) == dinner) currentOcean.fishLeaves(dinner.location);
+	}
+	
+	/**
+	 * The fish eats plankton from its square, or if it is deciding an intent, decides to.
+	 * @param amount The plankton to eat.
+	 * @param nourishment How much eating it takes off the fish's hunger.
+	 */
+	protected void graze(int amount, int nourishment)
+	{
+		if(intent != null)
+		{
+			intent.grazing = amount;
+			intent.nourishment = nourishment;
+			return;
+		}
+		currentOcean.reducePlankton(location, amount);
+		if(updatedOcean != currentOcean) updatedOcean.reducePlankton(location, amount);
+		decreaseHunger(nourishment);
 	}
 	
 	/**
 	 * A fish decides where to move in a preferential order.
 	 * First priority is finding food, second is finding a preferred location, third is staying in its current location.
-	 * If a fish can neither move nor stay it dies of overcrowding.
-	 * @param surroundings A list of locations around the fish.
+	 * If the square it chose is taken before it gets there, which can only happen when fish act at once,
+	 * it moves to any square around it that is still free.
+	 * If a fish can neither move nor stay it dies of overcrowding. In an ocean updated in place a fish still holds its own square,
+	 * so it can always stay.
+	 * Fish look at the squares around them through the oceans' neighbour masks.
 	 * @return The location a fish wants to move to. Will be null if fish dies.
 	 */
-	protected Location decideOnMovement(List<Location> surroundings)
+	protected Location decideOnMovement()
 	{
-		Location potentialLocation = findLocationOfFood(surroundings);
+		Location potentialLocation = findLocationOfFood();
 		
 		if(potentialLocation == null)
 		{
-			potentialLocation = chooseNextLocation(surroundings);
+			potentialLocation = chooseNextLocation();
 		}
-		if(potentialLocation != null)
+		if(potentialLocation == null && updatedOcean.getFishAt(location) == this)
 		{
-			move(potentialLocation);
+			potentialLocation = location;
 		}
-		else
+		if(potentialLocation != null && !move(potentialLocation))
+		{
+			potentialLocation = updatedOcean.claimAdjacentLocation(location, this, rand());
+			if(potentialLocation != null) leaveFor(potentialLocation);
+		}
+		if(potentialLocation == null)
 			die(ReasonForDeath.OVERCROWDING);
 		
 		return potentialLocation;
@@ -126,30 +301,149 @@ abstract public class Fish extends OceanObject implements Actor
 	/**
 	 * Abstract methods unique to each subtype of fish.
 	 */
-	abstract protected Location chooseNextLocation(List<Location> surroundings);
+	abstract protected Location chooseNextLocation();
 	
-	abstract protected Location findLocationOfFood(List<Location> surroundings);
+	abstract protected Location findLocationOfFood();
 	
 	/**
 	 * A fish modifies its location and adapts the current and updated ocean accordingly
 	 * NOTE: Fish must inform the current ocean of their leaving, otherwise they can still be seen as food for nearby fish.
 	 * @param location The new location of the fish.
+	 * @return True if the fish moved, false if the location was taken first.
 	 */
-	protected void move(Location location)
+	protected boolean move(Location location)
 	{		
-		currentOcean.getOceanSquareAtLocation(this.location).fishLeaves();
-		updatedOcean.getOceanSquareAtLocation(location).fishArrives(this);
+		if(updatedOcean.getFishAt(location) == this) //staying put in an ocean updated in place
+		{
+			moveStamp = updatedOcean.getMoveStamp();
+			return true;
+		}
+		if(!updatedOcean.claim(location, this)) return false;
+		leaveFor(location);
+		return true;
+	}
+	
+	/**
+	 * Leaves the current ocean for a location already claimed in the updated ocean.
+	 */
+	private void leaveFor(Location location)
+	{
+		currentOcean.fishLeaves(this.location);
+		SpatialIndex index = updatedOcean.getSpatialIndex();
+		if(index != null) index.move(this, this.location, location);
 		this.location = location;
+		moveStamp = updatedOcean.getMoveStamp();
+	}
+	
+	/**
+	 * In an ocean updated in place, fish that have already moved are seen where they moved to by the fish yet to act,
+	 * where separate oceans would have shown only the fish yet to act. Fish that only look at those use this to tell them apart.
+	 * @param ocean The ocean the fish is seen in.
+	 * @return True if the fish has moved or been born in the step the ocean is being updated in place.
+	 */
+	public boolean movedThisStep(Ocean ocean)
+	{
+		int stamp = ocean.getMoveStamp();
+		return stamp != 0 && moveStamp == stamp;
+	}
+	
+	/**
+	 * Leaves out of a neighbour mask the squares around the fish that hold fish which have already moved this step, see movedThisStep.
+	 * @param mask A mask of the squares around the fish in the current ocean.
+	 * @return The mask without those squares, the same mask unless the ocean is being updated in place.
+	 */
+	protected int notYetMoved(int mask)
+	{
+		if(currentOcean.getMoveStamp() == 0) return mask;
+		for(int bits = mask; bits != 0; bits &= bits - 1)
+		{
+			int d = Integer.numberOfTrailingZeros(bits);
+			Fish fish = currentOcean.getFishAt(currentOcean.neighbour(location, d));
+			if(fish != null && fish.movedThisStep(currentOcean)) mask &= ~(1 << d);
+		}
+		return mask;
 	}
 	
 	/**
-	 * Increases a fishes hunger by 10. If hunger reaches above a fishes stamina it will die of starvation.
+	 * Senses beyond the adjacent squares for the nearest fish of the given species.
+	 * Only possible if the ocean has a spatial index.
+	 * @param radius How far the fish can sense.
+	 * @param speciesMask The species to look for, see Species.getMask().
+	 * @return The nearest such fish, or null if there is none within the radius or the ocean has no index.
+	 */
+	protected Fish senseNearest(int radius, int speciesMask)
+	{
+		SpatialIndex index = currentOcean.getSpatialIndex();
+		if(index == null) return null;
+		return index.nearest(location, radius, speciesMask);
+	}
+	
+	/**
+	 * Chooses the empty location around the fish that is closest to a target, counting diagonal steps as 1.
+	 * Ties are broken at random.
+	 * @param target The location to head for.
+	 * @return The closest empty location to the target, or null if none are empty.
+	 */
+	protected Location approach(Location target)
+	{
+		int rowOffset = location.getRow() - target.getRow();
+		int colOffset = location.getCol() - target.getCol();
+		int closest = 0;
+		int closestDistance = Integer.MAX_VALUE;
+		for(int empty = updatedOcean.emptyNeighbourMask(location); empty != 0; empty &= empty - 1)
+		{
+			int d = Integer.numberOfTrailingZeros(empty);
+			int distance = Math.max(Math.abs(rowOffset + Ocean.DIRECTION_ROW[d]), Math.abs(colOffset + Ocean.DIRECTION_COL[d]));
+			if(distance < closestDistance)
+			{
+				closest = 1 << d;
+				closestDistance = distance;
+			}
+			else if(distance == closestDistance)
+			{
+				closest |= 1 << d;
+			}
+		}
+		if(closest == 0) return null;
+		return updatedOcean.neighbour(location, Ocean.randomDirection(closest, rand()));
+	}
+	
+	/**
+	 * Chooses the empty location around the fish that is closest to prey, following the prey field of the fish's species.
+	 * Ties are broken at random.
+	 * @return The empty location closest to prey, or null if there is no prey field, no prey in its range or no empty location.
+	 */
+	protected Location followPreyField()
+	{
+		FlowField field = currentOcean.getPreyField(getSpecies());
+		if(field == null) return null;
+		int closest = 0;
+		int closestDistance = field.getRange() + 1;
+		for(int empty = updatedOcean.emptyNeighbourMask(location); empty != 0; empty &= empty - 1)
+		{
+			int d = Integer.numberOfTrailingZeros(empty);
+			int distance = field.get(location.getRow() + Ocean.DIRECTION_ROW[d], location.getCol() + Ocean.DIRECTION_COL[d]);
+			if(distance < closestDistance)
+			{
+				closest = 1 << d;
+				closestDistance = distance;
+			}
+			else if(distance == closestDistance && closest != 0)
+			{
+				closest |= 1 << d;
+			}
+		}
+		if(closest == 0) return null;
+		return updatedOcean.neighbour(location, Ocean.randomDirection(closest, rand()));
+	}
+	
+	/**
+	 * Increases a fishes hunger by 10. The fish will have been killed by its LifeCycle first if this takes it above its stamina.
 	 */
 	
 	protected void increaseHunger()
 	{
 		hunger += 10;
-		if(hunger > getStamina()) die(ReasonForDeath.STARVATION);
 	}
 	
 	/**
@@ -173,31 +467,57 @@ abstract public class Fish extends OceanObject implements Actor
 	}
 	
 	/**
-	 * Increase the fishes age by 1. If the fishes ages goes above the maximum age of the fish it dies of old age.
+	 * Increase the fishes age by 1. The fish will have been killed by its LifeCycle first if this takes it above its maximum age.
 	 */
 	
 	protected void age()
 	{
 		age++;
-		if(age > getMaxAge()) die(ReasonForDeath.OLD_AGE);
 	}
 	
 	/**
-	 * Calculates the offspring of a fish and adds them to a list.
-	 * @param newFish List of actors to store new born fish.
+	 * Called by a LifeCycle at the start of a step in which something may happen to the fish, before it acts.
+	 * Kills the fish if ageing or growing hungrier in the step would take it above its maximum age or stamina,
+	 * otherwise lets it breed from the step it will be old enough.
+	 * @return True if the fish died.
 	 */
-	
-	protected void breed(List<Actor> newFish)
+	protected boolean updateLifeCycle()
 	{
-		try { newFish = giveBirth(calculateBirths(), newFish); }
-		catch(InstantiationException e)
+		if(age >= getMaxAge())
 		{
-			System.out.println(e.toString());
+			die(ReasonForDeath.OLD_AGE);
+			return true;
 		}
-		catch (IllegalAccessException e)
+		if(hunger + 10 > getStamina())
 		{
-			e.printStackTrace();
+			die(ReasonForDeath.STARVATION);
+			return true;
 		}
+		if(age >= getBreedingAge() - 1) mature = true;
+		return false;
+	}
+	
+	/**
+	 * Works out the first step in which updateLifeCycle could kill the fish or let it breed, supposing it eats nothing until then.
+	 * @param step A step the fish has not yet acted in.
+	 * @return The first step, no earlier than the given one, in which the fish could reach the end of its life or come of breeding age.
+	 */
+	protected long nextLifeEvent(long step)
+	{
+		long next = step + Math.max(0, getMaxAge() - age);
+		next = Math.min(next, step + Math.max(0, (getStamina() - hunger) / 10));
+		if(!mature) next = Math.min(next, step + Math.max(0, getBreedingAge() - 1 - age));
+		return next;
+	}
+	
+	/**
+	 * Calculates the offspring of a fish and adds them to a list.
+	 * @param newFish List of actors to store new born fish.
+	 */
+	
+	protected void breed(List<Actor> newFish)
+	{
+		giveBirth(calculateBirths(), newFish);
 	}
 
 	/**
@@ -206,41 +526,65 @@ abstract public class Fish extends OceanObject implements Actor
 	 */
 	protected int calculateBirths()
 	{
-		Random random = new Random();
 		int births = 0;
-        if(age >= getBreedingAge() && random.nextDouble() <= getBreedingProbability())
+        if(mature && rand().nextDouble() <= getBreedingProbability())
         {
-            births = random.nextInt(getMaxLitterSize()) + 1;
+            births = rand().nextInt(getMaxLitterSize()) + 1;
         }
         return births;
 	}
 	
 	/**
-	 * Creates new fish using class reflection and adds them to empty squares in the updatedOcean and to the list of new actors.
+	 * Creates new fish of the same species and adds them to empty squares in the updatedOcean and to the list of new actors.
+	 * The squares for the whole litter are claimed in one pass, see Ocean.freeAdjacentLocations, into a nursery array kept for each thread.
 	 * @param births Number of fish to create.
 	 * @param babyFishs List in which to store the fish as actors
 	 * @return Returns the list of baby fish as actors.
 	 */
-	protected List<Actor> giveBirth(int births, List<Actor> babyFishs) throws InstantiationException, IllegalAccessException
+	protected List<Actor> giveBirth(int births, List<Actor> babyFishs)
     {
-        for(int b = 0; b < births; b++)
+		if(births == 0) return babyFishs;
+		//Will only place offspring in empty locations.
+		Location nursery[] = Fish.nursery.get();
+		if(nursery.length < births)
+		{
+			nursery = new Location[births];
+			Fish.nursery.set(nursery);
+		}
+		Random rand = rand();
+		int placed = updatedOcean.freeAdjacentLocations(location, births, spillBirths, nursery, rand);
+        for(int b = 0; b < placed; b++)
         {
-        	//Will only place offspring in empty locations.
-        	Location freeAdjacentLocation = updatedOcean.freeAdjacentLocation(location);
-        	if(freeAdjacentLocation != null)
-	        {
-        		//The class of the new fish is based on what subclass inherits the method.
-	            Fish babyFish = this.getClass().newInstance();
-	            //Current ocean and location must be set as newInstance does not accept input variables.
-	            babyFish.setCurrentOcean(currentOcean);
-	            babyFish.setLocation(freeAdjacentLocation);
-	            babyFishs.add(babyFish);
-	            updatedOcean.addFish(babyFish);
-	        }
+        	Fish babyFish = getSpecies().createFish();
+        	babyFish.setRandomMaxAge(rand);
+        	//Current ocean and location must be set as createFish does not accept input variables.
+        	babyFish.setCurrentOcean(currentOcean);
+        	babyFish.setLocation(nursery[b]);
+        	babyFish.moveStamp = updatedOcean.getMoveStamp();
+        	if(!updatedOcean.claim(nursery[b], babyFish)) continue; //taken first by a fish acting at the same time
+        	babyFishs.add(babyFish);
+        	if(updatedOcean.getSpatialIndex() != null) updatedOcean.getSpatialIndex().add(babyFish);
         }
         return babyFishs;
     }
 	
+	/**
+	 * @return Returns maximum age of this fish
+	 */
+	protected int getMaxAge()
+	{
+		return maxAge;
+	}
+	
+	/**
+	 * Sets the maximum age of this fish
+	 * @param age Maximum age
+	 */
+	protected void setMaxAge(int age)
+	{
+		maxAge = age;
+	}
+	
 	/**
 	 * Sets the current ocean variable
 	 * @param currentOcean The ocean to set as the current ocean.
@@ -265,11 +609,10 @@ abstract public class Fish extends OceanObject implements Actor
 	
 	abstract protected double getBreedingProbability();
 	abstract protected int getMaxLitterSize();
-	abstract protected int getMaxAge();
-	abstract protected void setMaxAge(int age);
 	abstract protected int getAverageMaxAge();
 	abstract protected int getBreedingAge();
-	abstract protected int getStamina();		
+	abstract protected int getStamina();
+	abstract public Species getSpecies();		
 	
 	/**
 	 * Determines if the fish is still alive.
@@ -287,9 +630,77 @@ abstract public class Fish extends OceanObject implements Actor
 	public void die(ReasonForDeath r)
 	{
 		isAlive = false;
+		reasonForDeath = r;
 		//if(this instanceof Herring && r == ReasonForDeath.STARVATION)	System.out.println(this.toString() + " died of: " + r);
 	}
 	
+	/**
+	 * Causes a fish to die unless it already has. Of several fish trying to kill the same fish at once, only one succeeds.
+	 * @param r Enum reason for death.
+	 * @return True if this call killed the fish, false if it was already dead.
+	 */
+	public boolean kill(ReasonForDeath r)
+	{
+		if(!ALIVE.compareAndSet(this, true, false)) return false;
+		reasonForDeath = r;
+		return true;
+	}
+	
+	/**
+	 * @return Why the fish died, or null if it is alive.
+	 */
+	public ReasonForDeath getReasonForDeath()
+	{
+		return reasonForDeath;
+	}
+	
+	/**
+	 * Finds the handle used by kill.
+	 */
+	private static VarHandle aliveHandle()
+	{
+		try
+		{
+			return MethodHandles.lookup().findVarHandle(Fish.class, "isAlive", boolean.class);
+		}
+		catch(ReflectiveOperationException e)
+		{
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+	
+	/**
+	 * Writes everything about the fish a shard needs to carry it on in another process, apart from its species and location,
+	 * see ShardWorker. Locations the fish remembers are written as rows of the whole ocean.
+	 * @param out Where to write the state.
+	 * @param rowOffset The row of the whole ocean of row 0 of the ocean the fish is in.
+	 */
+	protected void writeState(DataOutput out, int rowOffset) throws IOException
+	{
+		out.writeBoolean(isAlive);
+		out.writeByte(reasonForDeath == null ? -1 : reasonForDeath.ordinal());
+		out.writeInt(age);
+		out.writeInt(hunger);
+		out.writeInt(maxAge);
+		out.writeBoolean(mature);
+	}
+	
+	/**
+	 * Reads the state written by writeState, replacing the fish's own.
+	 * @param in Where to read the state from.
+	 * @param rowOffset The row of the whole ocean of row 0 of the ocean the fish is in.
+	 */
+	protected void readState(DataInput in, int rowOffset) throws IOException
+	{
+		isAlive = in.readBoolean();
+		int reason = in.readByte();
+		reasonForDeath = reason < 0 ? null : ReasonForDeath.values()[reason];
+		age = in.readInt();
+		hunger = in.readInt();
+		maxAge = in.readInt();
+		mature = in.readBoolean();
+	}
+	
 	/**
 	 * @return Returns the location of the fish.
 	 */
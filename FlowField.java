@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The distance from every ocean square to the nearest prey, for predators that hunt beyond their surroundings.
+ * A predator follows the field by moving to the neighbouring square with the smallest distance.
+ * Distances are steps in any of the 8 directions around rocks, and are only found up to a range, further squares are unreached.
+ *
+ * The field is recomputed from scratch each step by a breadth first search from every prey square.
+ * The ocean is split into square tiles which are searched separately, in parallel on the Workers threads, each with a halo of the range around it,
+ * so that any prey within range of a square in the tile is found.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class FlowField
+{
+	public static final int MAX_RANGE = 126; //Distances are stored in bytes with one value left for unreached
+	public static final int DEFAULT_TILE_SIZE = 64;
+
+	private int height; //Height of the ocean
+	private int width; //Width of the ocean
+	private int preyMask; //Species.getMask() of each species of prey, or'ed together
+	private int range; //The furthest distance searched
+	private byte unreached; //The distance stored for squares with no prey in range
+	private int tileSize; //Tiles are tileSize squares high and wide
+	private int tileCols; //The number of tiles across the ocean
+	private int tileCount; //The number of tiles in the ocean
+	private byte distances[]; //The distance to the nearest prey from each square, row by row
+	private List<Searcher> searchers; //One per thread, each searches tiles until there are none left
+	private AtomicInteger nextTile; //The next tile for a searcher to take
+
+	/**
+	 * Create a field with the default tile size.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 * @param preyMask Species.getMask() of each species of prey, or'ed together.
+	 * @param range The furthest distance to search, from 1 to MAX_RANGE.
+	 */
+	public FlowField(int height, int width, int preyMask, int range)
+	{
+		this(height, width, preyMask, range, DEFAULT_TILE_SIZE);
+	}
+
+	/**
+	 * Create a field, all squares are unreached until it is first computed.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 * @param preyMask Species.getMask() of each species of prey, or'ed together.
+	 * @param range The furthest distance to search, from 1 to MAX_RANGE.
+	 * @param tileSize The height and width of the tiles searched in parallel.
+	 */
+	public FlowField(int height, int width, int preyMask, int range, int tileSize)
+	{
+		if(range < 1 || range > MAX_RANGE) throw new IllegalArgumentException("Flow field range must be from 1 to " + MAX_RANGE + ", not " + range);
+		this.height = height;
+		this.width = width;
+		this.preyMask = preyMask;
+		this.range = range;
+		this.tileSize = tileSize;
+		unreached = (byte) (range + 1);
+		tileCols = (width + tileSize - 1) / tileSize;
+		tileCount = tileCols * ((height + tileSize - 1) / tileSize);
+		distances = new byte[height * width];
+		Arrays.fill(distances, unreached);
+		nextTile = new AtomicInteger();
+		searchers = new ArrayList<Searcher>();
+		for(int t = 0; t < Math.min(Workers.getThreads(), tileCount); t++)
+		{
+			searchers.add(new Searcher());
+		}
+	}
+
+	/**
+	 * Recomputes the distances from the prey and rocks in an ocean.
+	 * @param ocean The ocean to search, which must not change until this returns.
+	 */
+	public void compute(Ocean ocean)
+	{
+		nextTile.set(0);
+		for(Searcher searcher : searchers)
+		{
+			searcher.ocean = ocean;
+		}
+		Workers.runAll(searchers);
+	}
+
+	/**
+	 * @return The distance from a square to the nearest prey, or getRange() + 1 if there is none in range.
+	 */
+	public int get(int row, int col)
+	{
+		return distances[row * width + col];
+	}
+
+	/**
+	 * @return True if there is prey within range of a square.
+	 */
+	public boolean isReached(int row, int col)
+	{
+		return distances[row * width + col] != unreached;
+	}
+
+	/**
+	 * @return The furthest distance searched.
+	 */
+	public int getRange()
+	{
+		return range;
+	}
+
+	/**
+	 * Searches tiles one after another, with its own scratch space so that searchers can run at the same time.
+	 */
+	private class Searcher implements Callable<Void>
+	{
+		private Ocean ocean; //The ocean being searched
+		private byte local[]; //Distances across the tile and its halo
+		private int queue[]; //Squares of the tile and halo waiting to be expanded, as indexes into local
+
+		private Searcher()
+		{
+			int span = tileSize + 2 * range;
+			int squares = Math.min(span, height) * Math.min(span, width);
+			local = new byte[squares];
+			queue = new int[squares];
+		}
+
+		public Void call()
+		{
+			for(int tile = nextTile.getAndIncrement(); tile < tileCount; tile = nextTile.getAndIncrement())
+			{
+				searchTile(ocean, tile);
+			}
+			return null;
+		}
+
+		/**
+		 * Finds the distances for the squares of one tile, searching from the prey in the tile and its halo.
+		 */
+		private void searchTile(Ocean ocean, int tile)
+		{
+			int top = (tile / tileCols) * tileSize;
+			int left = (tile % tileCols) * tileSize;
+			int bottom = Math.min(height, top + tileSize);
+			int right = Math.min(width, left + tileSize);
+			//The halo reaches range squares beyond the tile, clipped to the ocean
+			int haloTop = Math.max(0, top - range);
+			int haloLeft = Math.max(0, left - range);
+			int haloHeight = Math.min(height, bottom + range) - haloTop;
+			int haloWidth = Math.min(width, right + range) - haloLeft;
+
+			int head = 0;
+			int tail = 0;
+			for(int r = 0; r < haloHeight; r++)
+			{
+				for(int c = 0; c < haloWidth; c++)
+				{
+					int i = r * haloWidth + c;
+					Fish fish = ocean.fishAt(haloTop + r, haloLeft + c);
+					if(fish != null && (fish.getSpecies().getMask() & preyMask) != 0)
+					{
+						local[i] = 0;
+						queue[tail++] = i;
+					}
+					else local[i] = unreached;
+				}
+			}
+
+			while(head < tail)
+			{
+				int i = queue[head++];
+				int distance = local[i] + 1;
+				if(distance > range) continue;
+				int r = i / haloWidth;
+				int c = i % haloWidth;
+				for(int d = 0; d < 8; d++)
+				{
+					int nr = r + Ocean.DIRECTION_ROW[d];
+					int nc = c + Ocean.DIRECTION_COL[d];
+					if(nr < 0 || nc < 0 || nr >= haloHeight || nc >= haloWidth) continue;
+					int n = nr * haloWidth + nc;
+					if(local[n] == unreached && !ocean.rockAt(haloTop + nr, haloLeft + nc))
+					{
+						local[n] = (byte) distance;
+						queue[tail++] = n;
+					}
+				}
+			}
+
+			for(int row = top; row < bottom; row++)
+			{
+				System.arraycopy(local, (row - haloTop) * haloWidth + (left - haloLeft), distances, row * width + left, right - left);
+			}
+		}
+	}
+}
@@ -1,5 +1,5 @@
 import java.awt.Color;
-import java.util.List;
+import java.util.Random;
 
 /**
  * A simple model of a blue groper.
@@ -18,11 +18,12 @@ public class Groper extends Fish
     private static final int STAMINA = 100; //The maximum hunger level a groper can achieve before death
 	
 	//Static variables 
-    private static int MAX_AGE = 100; //The maximum age of an instance of groper, default is 100
     private static Color COLOUR = Color.red; //Set the colour of all groper
 	
     //Public static variables
 	public static boolean REPORT_DINNER = false; //Determines if a groper reports its dinner to the console
+	public static int visionRadius = 1; //How far away a groper can sense herring, above 1 groper head for herring they sense
+	public static int huntingRange = 0; //How far away a groper can track prey around rocks, above 0 groper follow the ocean's prey field
 	
 	/**
 	 * Groper constructor, only to be called by Fish class
@@ -40,25 +41,30 @@ public class Groper extends Fish
 		super(randomAge, location);
 	}
 
+    /**
+     * Creates a groper of random age, drawing from the given random object, see Fish.
+     * @param rand The random object to draw from.
+     * @param location The location of the groper.
+     */
+    public Groper(Random rand, Location location)
+	{
+		super(rand, location);
+	}
+
     /**
      * Groper only eat herring and will search their surroundings for them.
-     * Once a herring is found it is eaten and its location is returned.
-     * @param surroundings List of locations around the groper
+     * If any herring are found one is chosen at random, eaten and its location is returned.
      */
-	protected Location findLocationOfFood(List<Location> surroundings)
+	protected Location findLocationOfFood()
 	{
-    	Location locationOfDinner = null;
-    	for(Location lookingAt : surroundings)
-		{
-			Fish dinner = currentOcean.getOceanSquareAtLocation(lookingAt).getFish();
-			if(dinner != null && dinner instanceof Herring)
-			{
-				locationOfDinner = dinner.getLocation();
-				if(REPORT_DINNER) thoughts += "Yay" + dinner.toString() + " for dinner.";
-				eat(dinner);
-				return locationOfDinner;
-			}
-		}
+    	int herring = notYetMoved(currentOcean.neighbourMask(location, Species.HERRING.getMask()));
+    	if(herring == 0) return null;
+    	
+		Location locationOfDinner = currentOcean.neighbour(location, Ocean.randomDirection(herring, rand()));
+		Fish dinner = currentOcean.getFishAt(locationOfDinner);
+		if(dinner == null) return null; //only when fish act at once, the dinner left since the mask was read
+		if(REPORT_DINNER) thoughts += "Yay" + dinner.toString() + " for dinner.";
+		eat(dinner);
 		return locationOfDinner;
 	}
     
@@ -69,18 +75,31 @@ public class Groper extends Fish
 	 */
     private void eat(Fish dinner)
     {
-    	super.decreaseHunger(50);
-		dinner.die(ReasonForDeath.EATEN);
+    	eat(dinner, 50);
 		if(REPORT_DINNER) thoughts += "I have eaten" + dinner.toString() + " My hunger is now " + getHunger() + "\n";
     }
     
     /**
-     * Gropers will just move to the first free location in their surroundings
-     * @param surroundings List of locations around the groper
+     * Gropers will head towards the nearest herring they can sense, or if they hunt follow the prey field towards herring within huntingRange,
+     * otherwise they just move to the first free location in their surroundings
      */
-    protected Location chooseNextLocation(List<Location> surroundings)
+    protected Location chooseNextLocation()
 	{
-		return updatedOcean.freeAdjacentLocation(this.location);
+    	if(visionRadius > 1)
+    	{
+    		Fish prey = senseNearest(visionRadius, Species.HERRING.getMask());
+    		if(prey != null)
+    		{
+    			Location towardsPrey = approach(prey.getLocation());
+    			if(towardsPrey != null) return towardsPrey;
+    		}
+    	}
+    	if(huntingRange > 0)
+    	{
+    		Location towardsPrey = followPreyField();
+    		if(towardsPrey != null) return towardsPrey;
+    	}
+		return updatedOcean.freeAdjacentLocation(this.location, rand());
 	}
     
     /**
@@ -99,23 +118,6 @@ public class Groper extends Fish
 		return MAX_LITTER_SIZE;
 	}
 	
-	/**
-     * @return Returns maximum age of this groper
-     */
-	protected int getMaxAge()
-	{
-		return MAX_AGE;
-	}
-	
-	/**
-	 * Sets the maximum age of this groper
-	 * @param age Maximum age
-	 */
-	protected void setMaxAge(int age)
-	{
-		MAX_AGE = age;
-	}
-	
 	/**
      * @return Returns average maximum age of gropers
      */
@@ -140,6 +142,14 @@ public class Groper extends Fish
 		return STAMINA;
 	}
     
+	/**
+     * @return Returns the species of gropers
+     */
+	public Species getSpecies()
+	{
+		return Species.GROPER;
+	}
+    
 	/**
      * @return Returns the colour of all gropers
      */
@@ -1,6 +1,8 @@
 import java.awt.Color;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
 
 /**
  * A simple model of a herring.
@@ -28,10 +30,12 @@ public class Herring extends Fish
     public static boolean enableDirectionMaintenance = true; //Enables herring to prefer maintaining direction
     
     //Private global variables
-    private int MAX_AGE = 50; //The maximum age of an instance of herring, default is 50
     private Location toFollow = null; //The location of a herring that was nearby and has moved
     private Location lastTranslation = null; //A translation location based on the herring last move
     
+    //For a leader at each row and column offset from -2 to 2, a mask of the neighbour directions that are next to the leader
+    private static final int NEXT_TO_LEADER[] = nextToLeaderTable();
+    
     /**
 	 * Herring constructor, only to be called by Fish class
 	 */
@@ -48,19 +52,25 @@ public class Herring extends Fish
 		super(randomAge, location);
 	}
 
+    /**
+     * Creates a herring of random age, drawing from the given random object, see Fish.
+     * @param rand The random object to draw from.
+     * @param location The location of the herring.
+     */
+    public Herring(Random rand, Location location)
+	{
+		super(rand, location);
+	}
+
     /**
      * Herring feed from the plankton level of their current square.
      * They always return null.
      */
-	protected Location findLocationOfFood(List<Location> surroundings)
+	protected Location findLocationOfFood()
 	{
-    	OceanSquare currentSquare = currentOcean.getOceanSquareAtLocation(location);
-    	OceanSquare futureSquare = updatedOcean.getOceanSquareAtLocation(location);
-    	if(currentSquare.getPlanktonLevel() >= 2)
+    	if(currentOcean.getPlanktonLevel(location) >= 2)
     	{
-    		currentSquare.reducePlankton(2);
-    		futureSquare.reducePlankton(2);
-    		decreaseHunger(30);
+    		graze(2, 30);
     	}
     	return null;
 	}
@@ -78,16 +88,15 @@ public class Herring extends Fish
 	/**
 	 * Herring chose where they would most like to move to, they prefer to follow a leader to maintaining direction.
 	 * A leader will already be maintaining direction
-     * @param surroundings List of locations around the herring
 	 * @return Returns the established best next location, either closest to a leader, maintaining direct, any other free adjacent location or null if none are free.
 	 */
-	protected Location chooseNextLocation(List<Location> surroundings)
+	protected Location chooseNextLocation()
 	{
-		Location nextLocation = updatedOcean.freeAdjacentLocation(this.location);
+		Location nextLocation = updatedOcean.freeAdjacentLocation(this.location, rand());
 		
 		if(enableGrouping && toFollow != null)
 		{
-			Location closestToLeader = calculateNearestToLeader(surroundings, toFollow);
+			Location closestToLeader = calculateNearestToLeader(toFollow);
 			if(closestToLeader != null)
 				nextLocation = closestToLeader;
 		}
@@ -99,9 +108,10 @@ public class Herring extends Fish
 		}
 		
 		//If the herring finds a location to move to it informs nearby herring of its future location and calculates what transformation it will take to get there.
-		if(nextLocation != null)
+		//A herring deciding an intent does this in settle instead, once it knows where it has gone.
+		if(nextLocation != null && intent == null)
 		{
-			informNearbyHerring(surroundings, nextLocation);
+			informNearbyHerring(this.location, nextLocation);
 			lastTranslation = this.location.calculateTranslation(nextLocation);
 		}
 		//return updatedOcean.freeAdjacentLocation(this.location);
@@ -110,59 +120,94 @@ public class Herring extends Fish
 	
 	/**
 	 * Calculates the nearest location to a given location, used to find a location nearest to a leader herring.
-	 * It does this by cross comparing two lists of Locations, empty locations around this herring, and empty locations around the leader herring.
-	 * @param surroundings List of locations around the herring.
+	 * It does this by masking the empty locations around this herring with those of its neighbours that are next to the leader.
 	 * @param leadersLocation The location this herring aims to get closest to.
 	 * @return Returns a free location around the leader if any, else returns null.
+	 * Package private so that the benchmarks can time it.
+	 */
+	Location calculateNearestToLeader(Location leadersLocation)
+	{
+		int rowOffset = leadersLocation.getRow() - location.getRow();
+		int colOffset = leadersLocation.getCol() - location.getCol();
+		if(Math.abs(rowOffset) > 2 || Math.abs(colOffset) > 2) return null;
+		
+		int emptyNextToLeader = updatedOcean.emptyNeighbourMask(location) & NEXT_TO_LEADER[(rowOffset + 2) * 5 + colOffset + 2];
+		if(emptyNextToLeader == 0) return null;
+		return updatedOcean.neighbour(location, Ocean.randomDirection(emptyNextToLeader, rand()));
+	}
+	
+	/**
+	 * Once a decided move has been carried out, the herring informs the herring around where it was of where it has gone,
+	 * as it does straight away when acting.
+	 * @param from Where the herring moved from.
 	 */
-	private Location calculateNearestToLeader(List<Location> surroundings, Location leadersLocation)
+	protected void settle(Location from)
 	{
-		List<Location> emptyLocationsAroundMe = new ArrayList<Location>();
-		List<Location> emptyLocationsAroundLeader = new ArrayList<Location>();
-		for(Location lookingAt : surroundings)
+		informNearbyHerring(from, location);
+		lastTranslation = from.calculateTranslation(location);
+	}
+	
+	/**
+	 * Adds the location the herring is following and the way it last moved to the state of Fish.
+	 */
+	protected void writeState(DataOutput out, int rowOffset) throws IOException
+	{
+		super.writeState(out, rowOffset);
+		out.writeBoolean(toFollow != null);
+		if(toFollow != null)
 		{
-			if(updatedOcean.isLocationEmpty(lookingAt))
-			{
-				emptyLocationsAroundMe.add(lookingAt);
-			}
+			out.writeInt(toFollow.getRow() + rowOffset);
+			out.writeInt(toFollow.getCol());
 		}
-		for(Location lookingAt : updatedOcean.adjacentLocations(leadersLocation))
+		out.writeBoolean(lastTranslation != null);
+		if(lastTranslation != null)
 		{
-			if(updatedOcean.isLocationEmpty(lookingAt))
-			{
-				emptyLocationsAroundLeader.add(lookingAt);
-			}
+			out.writeInt(lastTranslation.getRow());
+			out.writeInt(lastTranslation.getCol());
 		}
-		for(Location emptyLocationAroundMe : emptyLocationsAroundMe)
+	}
+	
+	protected void readState(DataInput in, int rowOffset) throws IOException
+	{
+		super.readState(in, rowOffset);
+		toFollow = in.readBoolean() ? new Location(in.readInt() - rowOffset, in.readInt()) : null;
+		lastTranslation = in.readBoolean() ? new Location(in.readInt(), in.readInt()) : null;
+	}
+	
+	/**
+	 * Builds the table of NEXT_TO_LEADER.
+	 */
+	private static int[] nextToLeaderTable()
+	{
+		int table[] = new int[25];
+		for(int rowOffset = -2; rowOffset <= 2; rowOffset++)
 		{
-			for(Location emptyLocationAroundLeader : emptyLocationsAroundLeader)
+			for(int colOffset = -2; colOffset <= 2; colOffset++)
 			{
-				if(emptyLocationAroundMe.isEqualTo(emptyLocationAroundLeader))
+				for(int d = 0; d < 8; d++)
 				{
-					return emptyLocationAroundMe;
+					int rowsAway = Math.abs(Ocean.DIRECTION_ROW[d] - rowOffset);
+					int colsAway = Math.abs(Ocean.DIRECTION_COL[d] - colOffset);
+					if(Math.max(rowsAway, colsAway) == 1) table[(rowOffset + 2) * 5 + colOffset + 2] |= 1 << d;
 				}
 			}
 		}
-		return null;
+		return table;
 	}
 	
 	/**
 	 * Finds fellow herrings in this herrings surroundings and informs them of where it is going
-	 * @param surroundings List of locations around the herring
+	 * @param from Where this herring is moving from
 	 * @param futureLocation Where this herring is moving to
 	 */
-	private void informNearbyHerring(List<Location> surroundings, Location futureLocation)
+	private void informNearbyHerring(Location from, Location futureLocation)
 	{
-		for(Location lookingAt : surroundings)
+		for(int herring = notYetMoved(currentOcean.neighbourMask(from, Species.HERRING.getMask())); herring != 0; herring &= herring - 1)
 		{
-			Fish f = currentOcean.getFishAt(lookingAt);
-			if(f != null)
-			{
-				if(f instanceof Herring)
-				{
-					((Herring) f).setFollowLocation(futureLocation);
-				}
-			}
+			Location lookingAt = currentOcean.neighbour(from, Integer.numberOfTrailingZeros(herring));
+			Fish neighbour = currentOcean.getFishAt(lookingAt);
+			//When fish act at once the herring may have left since the mask was read
+			if(neighbour != null) ((Herring) neighbour).setFollowLocation(futureLocation);
 		}
 	}
 	    	
@@ -182,23 +227,6 @@ public class Herring extends Fish
 		return MAX_LITTER_SIZE;
 	}
 	
-	/**
-     * @return Returns maximum age of this herring
-     */
-	protected int getMaxAge()
-	{
-		return MAX_AGE;
-	}
-	
-	/**
-	 * Sets the maximum age of this herring
-	 * @param age Maximum age
-	 */
-	protected void setMaxAge(int age)
-	{
-		MAX_AGE = age;
-	}
-	
 	/**
      * @return Returns average maximum age of herrings
      */
@@ -223,6 +251,14 @@ public class Herring extends Fish
 		return STAMINA;
 	}
     
+	/**
+     * @return Returns the species of herrings
+     */
+	public Species getSpecies()
+	{
+		return Species.HERRING;
+	}
+    
 	/**
      * @return Returns the colour of all herrings
      */
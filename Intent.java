@@ -0,0 +1,37 @@
+import java.util.Random;
+
+/**
+ * What a fish has decided to do in a step, decided from the current ocean alone by Fish.intend and carried out later by Fish.carryOut,
+ * once every fish has decided. See IntentPipeline.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class Intent
+{
+	Fish fish; //The fish that decided
+	Location target; //Where the fish wants to move, or null if it saw nowhere to go
+	Fish prey; //The fish it wants to eat, or null
+	int nourishment; //How much eating the prey or grazing would take off its hunger
+	int grazing; //How much plankton it wants to eat from its square, 0 for none
+	int births; //The number of young it wants to have
+	String thoughts; //The fish's thoughts while deciding
+	Random rand; //The random object the fish decided with
+
+	/**
+	 * Forgets the last decision, ready for the fish to decide again.
+	 * @param fish The fish to decide.
+	 * @param rand The random object for it to draw from.
+	 */
+	void reset(Fish fish, Random rand)
+	{
+		this.fish = fish;
+		this.rand = rand;
+		target = null;
+		prey = null;
+		nourishment = 0;
+		grazing = 0;
+		births = 0;
+		thoughts = "";
+	}
+}
@@ -0,0 +1,163 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the acting part of a step in two phases rather than letting each fish change the oceans as it acts.
+ * First every fish decides what to do from the current ocean alone, see Fish.intend. Nothing is changed while fish decide,
+ * so they decide in parallel on the Workers threads. Then the decisions are carried out one at a time, see Fish.carryOut,
+ * with fish that want the same square or the same prey settled in favour of whichever comes first.
+ *
+ * The order decisions are carried out in, and every random number a fish draws while deciding or carrying out its decision,
+ * come from the step's seed and the square the fish starts the step on, so the outcome of a step depends on neither the order of the actor list
+ * nor the number of threads.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class IntentPipeline
+{
+	private static final int CHUNK = 1024; //The fish a decider takes at a time
+
+	private Intent intents[] = new Intent[0]; //The decision of each fish in the actor list, kept from step to step
+	private long order[] = new long[0]; //Each fish's priority in the high half and its index in the low half, sorted to carry out decisions in order, ties by square
+	private Random carrier = new Random(); //Reseeded for each fish as it carries out its decision
+
+	/**
+	 * Lets every fish decide and then carries out their decisions.
+	 * @param actors The actors, all of them living fish.
+	 * @param currentOcean Reference to the current ocean.
+	 * @param updatedOcean Reference to the updated ocean.
+	 * @param newActors A list of actors in which to store new born fish.
+	 * @param seed The seed of the step.
+	 * @param step The step, for printing thoughts.
+	 */
+	public void act(List<Actor> actors, Ocean currentOcean, Ocean updatedOcean, List<Actor> newActors, long seed, int step)
+	{
+		int count = actors.size();
+		if(intents.length < count)
+		{
+			Intent grown[] = Arrays.copyOf(intents, Math.max(count, intents.length * 3 / 2));
+			for(int i = intents.length; i < grown.length; i++)
+			{
+				grown[i] = new Intent();
+			}
+			intents = grown;
+			order = new long[grown.length];
+		}
+
+		AtomicInteger next = new AtomicInteger();
+		List<Decider> deciders = new ArrayList<Decider>();
+		for(int t = 0; t < Math.min(Workers.getThreads(), (count + CHUNK - 1) / CHUNK); t++)
+		{
+			deciders.add(new Decider(actors, currentOcean, seed, next));
+		}
+		Workers.runAll(deciders);
+		Arrays.sort(order, 0, count);
+		int width = currentOcean.getWidth();
+		breakTies(count, width);
+
+		for(int o = 0; o < count; o++)
+		{
+			Intent intent = intents[(int) order[o]];
+			Fish fish = intent.fish;
+			if(!fish.isAlive()) continue; //eaten by a fish that came first
+			carrier.setSeed(mix(mix(seed + square(fish, width))));
+			intent.rand = carrier;
+			fish.carryOut(intent, currentOcean, updatedOcean, newActors);
+			if(intent.thoughts != "") System.out.println("Step: " + step + " |" + fish.toString() + " says " + intent.thoughts);
+		}
+		for(int i = 0; i < count; i++)
+		{
+			intents[i].fish = null;
+			intents[i].prey = null;
+			intents[i].rand = null;
+		}
+	}
+
+	/**
+	 * Puts fish given the same priority in the order of the squares they start the step on, rather than of their indices in the actor list.
+	 * Ties are rare, so each run of them is sorted by insertion.
+	 * @param count The number of fish.
+	 * @param width The width of the ocean.
+	 */
+	private void breakTies(int count, int width)
+	{
+		for(int o = 1; o < count; o++)
+		{
+			long entry = order[o];
+			if(order[o - 1] >>> 32 != entry >>> 32) continue;
+			long square = square(intents[(int) entry].fish, width);
+			int p = o;
+			while(p > 0 && order[p - 1] >>> 32 == entry >>> 32 && square(intents[(int) order[p - 1]].fish, width) > square)
+			{
+				order[p] = order[p - 1];
+				p--;
+			}
+			order[p] = entry;
+		}
+	}
+
+	/**
+	 * @return The square a fish is on, counting row by row.
+	 */
+	private static long square(Fish fish, int width)
+	{
+		Location location = fish.getLocation();
+		return location.getRow() * (long) width + location.getCol();
+	}
+
+	/**
+	 * @return A value mixed so that neighbouring inputs give unrelated outputs.
+	 */
+	private static long mix(long value)
+	{
+		value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+		value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+		return value ^ (value >>> 31);
+	}
+
+	/**
+	 * Lets chunks of fish decide one after another until there are none left.
+	 * Each fish draws from a random object seeded from the step's seed and the square the fish is on,
+	 * and is given its priority from the same.
+	 */
+	private class Decider implements Callable<Void>
+	{
+		private List<Actor> actors;
+		private Ocean ocean;
+		private long seed;
+		private AtomicInteger next; //The next chunk for a decider to take
+		private Random rand = new Random();
+
+		private Decider(List<Actor> actors, Ocean ocean, long seed, AtomicInteger next)
+		{
+			this.actors = actors;
+			this.ocean = ocean;
+			this.seed = seed;
+			this.next = next;
+		}
+
+		public Void call()
+		{
+			int width = ocean.getWidth();
+			for(int start = next.getAndIncrement() * CHUNK; start < actors.size(); start = next.getAndIncrement() * CHUNK)
+			{
+				int end = Math.min(actors.size(), start + CHUNK);
+				for(int i = start; i < end; i++)
+				{
+					Fish fish = (Fish) actors.get(i);
+					long square = square(fish, width);
+					rand.setSeed(mix(seed + square));
+					intents[i].reset(fish, rand);
+					fish.intend(ocean, intents[i]);
+					order[i] = (mix(~seed + square) >>> 33) << 32 | i;
+				}
+			}
+			return null;
+		}
+	}
+}
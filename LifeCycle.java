@@ -0,0 +1,68 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Kills fish of old age and starvation and lets them breed once they are old enough, looking at each fish only in the steps
+ * something could happen to it rather than every step. Each fish waits in a TimingWheel until the first step it could die
+ * or come of breeding age, worked out from its age and hunger, see Fish.nextLifeEvent.
+ *
+ * Eating only puts starvation off, so a fish that has eaten is not rescheduled when it eats. It is looked at in the step
+ * it would have starved, finds it is not starving after all and is scheduled again from its new hunger.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class LifeCycle
+{
+	private TimingWheel<Fish> wheel;
+	private List<Fish> due; //The fish due in the current step, kept to save making a new list every step
+
+	/**
+	 * Create a life cycle following no fish.
+	 */
+	public LifeCycle()
+	{
+		wheel = new TimingWheel<Fish>();
+		due = new ArrayList<Fish>();
+	}
+
+	/**
+	 * Starts following a fish, which is to act for the first time in the next step.
+	 * @param fish The fish.
+	 */
+	public void add(Fish fish)
+	{
+		wheel.schedule(fish, fish.nextLifeEvent(wheel.getStep() + 1));
+	}
+
+	/**
+	 * Starts following every fish in a list of actors.
+	 * @param actors The actors, of which those that are not fish are ignored.
+	 */
+	public void addAll(List<Actor> actors)
+	{
+		for(Actor actor : actors)
+		{
+			if(actor instanceof Fish) add((Fish) actor);
+		}
+	}
+
+	/**
+	 * Moves on to the next step, to be called at the start of each step before any fish act.
+	 * Fish that would reach the end of their life in the step die now, before acting, and are taken out of the ocean
+	 * so that they are not seen or eaten in the step. Fish that have died some other way since they were scheduled are dropped,
+	 * as are fish no longer in the ocean, such as those a ShardWorker has handed on to the shard they moved into.
+	 * @param ocean The ocean the fish are in at the start of the step.
+	 */
+	public void advance(Ocean ocean)
+	{
+		wheel.advance(due);
+		for(Fish fish : due)
+		{
+			if(!fish.isAlive() || ocean.getFishAt(fish.getLocation()) != fish) continue;
+			if(!fish.updateLifeCycle()) wheel.schedule(fish, fish.nextLifeEvent(wheel.getStep()));
+			else ocean.fishLeaves(fish.getLocation());
+		}
+		due.clear();
+	}
+}
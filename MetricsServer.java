@@ -0,0 +1,60 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the live metrics of a simulation over HTTP on the local machine, at /metrics in the Prometheus text format.
+ * Requests are answered on the server's own thread, which only reads the metrics, so scraping never holds up a step.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class MetricsServer
+{
+	private HttpServer server;
+
+	/**
+	 * Starts serving metrics.
+	 * @param metrics The metrics to serve.
+	 * @param port The port to listen on, on the loopback address only.
+	 * @throws IOException If the port cannot be listened on.
+	 */
+	public MetricsServer(final SimulationMetrics metrics, int port) throws IOException
+	{
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/metrics", new HttpHandler()
+		{
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				byte body[] = metrics.toPrometheus().getBytes("UTF-8");
+				exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+				exchange.sendResponseHeaders(200, body.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				out.close();
+			}
+		});
+		server.start();
+	}
+
+	/**
+	 * @return The port metrics are served on.
+	 */
+	public int getPort()
+	{
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops serving metrics.
+	 */
+	public void stop()
+	{
+		server.stop(0);
+	}
+}
@@ -1,3 +1,4 @@
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -5,20 +6,51 @@ import java.util.Random;
 
     /**
      * Represent an ocean of the given dimensions.
-     * The ocean stores an array of squares that hold fish rocks etc...
+     * The ocean stores a layer each for the fish, rocks and plankton of its grid points.
      * The ocean is used to deliver information about its ocean squares and pass data onto them.
-     * 
+     * Subclasses may store the layers differently by overriding the protected cell methods.
+     *
      * @author Matthew Maglennon
      */
 
 public class Ocean
 {
-    private static final Random rand = new Random(); //Random object used for creation of random ints etc...
-	
+    private static final Random rand = Randomizer.getRandom(); //Random object used for creation of random ints etc...
+
+    public static final float MAX_PLANKTON = 10; //Plankton will not regenerate beyond this level
+    public static final float INITIAL_PLANKTON = 4; //Plankton level of a newly created ocean square
+    public static final int TILE_SHIFT = 4; //Tiles are 2^TILE_SHIFT squares high and wide
+    
+    //The row and column offsets of the 8 neighbour directions, used by neighbour masks
+    public static final int DIRECTION_ROW[] = {-1, -1, -1, 0, 0, 1, 1, 1};
+    public static final int DIRECTION_COL[] = {-1, 0, 1, -1, 1, -1, 0, 1};
+    //The row and column offsets of the 16 squares two away from a square, bit d of an outer mask is square d
+    private static final int OUTER_ROW[] = {-2, -2, -2, -2, -2, -1, -1, 0, 0, 1, 1, 2, 2, 2, 2, 2};
+    private static final int OUTER_COL[] = {-2, -1, 0, 1, 2, -2, 2, -2, 2, -2, 2, -2, -1, 0, 1, 2};
+
 	private int height = 0; //Stores the height of the ocean instance.
 	private int width = 0; //Stores the width of the ocean instance.
-	private OceanSquare oceanSquareArray[][]; //An array to store an ocean square object for each ocean grid point
-	
+	private Fish fishLayer[]; //The fish at each ocean grid point, stored row by row
+	private Bitboard speciesBoards[]; //Which grid points hold each species of fish, indexed by species code
+	private Bitboard rockBoard; //Which grid points hold rocks
+	private Bitboard outsideBoard; //The grid points just outside the ocean, which look full
+	private float planktonLayer[]; //The plankton level at each ocean grid point
+	private float planktonSpare[]; //The layer plankton is transported into, which then becomes the plankton layer, null until first needed
+	private float planktonCopy[]; //The plankton copied out of an ocean that keeps no plankton layer, to be transported, null until first needed
+	private Bitboard transportRocks; //The rocks copied out of an ocean that keeps no plankton layer, to be transported around, null until first needed
+	private int tileCols; //The number of tiles across the ocean
+	private int tileFish[]; //The number of fish in each tile, row by row
+	private int tileHungry[]; //The number of squares in each tile with less than MAX_PLANKTON, row by row
+	private double tilePlankton[]; //The plankton of each tile added up, row by row, so that tiles regeneration skips still count towards the total
+	private double totalPlankton; //The plankton of every square added up, while totalPlanktonKnown is set
+	private boolean totalPlanktonKnown; //Set as plankton is regenerated and kept up to date by grazing, cleared when plankton changes any other way
+	private SpatialIndex spatialIndex; //Index of where fish are for long range senses, null if no fish need one
+	private FlowField preyFields[]; //The distance to prey for each species of hunter, indexed by species code
+	private RepulsionField sharkRepulsion; //How crowded each square is by the sharks in this ocean, null if sharks do not avoid each other
+	private Terrain terrain; //The rocks and the passable neighbours of each square, shared by the current and updated ocean, null until set
+	private int moveStamp; //Counts the steps the ocean has been updated in place, stamped on fish as they move, 0 if it never has been
+	private Random random = rand; //The random object fish acting in this ocean draw from, the shared one unless set
+
 	/**
 	 * Construct an ocean object of a given height and width.
 	 * @param height Ocean height.
@@ -26,53 +58,200 @@ public class Ocean
 	 */
     public Ocean(int height, int width)
     {
-    	this.height = height;
-    	this.width = width;
-    	oceanSquareArray = new OceanSquare[height][width];
-		initialiseArray();
+    	this(height, width, true);
     }
-    
+
     /**
-     * Fills the ocean square array with ocean squares.
+     * Constructor for subclasses that store the ocean layers themselves.
+     * @param height Ocean height.
+     * @param width Ocean width.
+     * @param allocateLayers If false the layers are not allocated and the cell methods must be overridden.
      */
-    private void initialiseArray()
-    {	
-    	int rowCount = 0;
-    	int colCount = 0;
-		for(OceanSquare[] row : oceanSquareArray)
-    	{	
-    		for(colCount = 0; colCount < row.length; colCount++)
+    protected Ocean(int height, int width, boolean allocateLayers)
+    {
+    	this.height = height;
+    	this.width = width;
+    	if(allocateLayers)
+    	{
+    		fishLayer = new Fish[height * width];
+    		speciesBoards = new Bitboard[Species.values().length + 1];
+    		for(Species species : Species.values())
     		{
-    			row[colCount] = new OceanSquare(new Location(rowCount, colCount));
+    			speciesBoards[species.getCode()] = new Bitboard(height, width);
     		}
-    		rowCount++;
+    		rockBoard = new Bitboard(height, width);
+    		outsideBoard = Bitboard.outside(height, width);
+    		planktonLayer = new float[height * width];
+    		Arrays.fill(planktonLayer, INITIAL_PLANKTON);
+    		tileCols = ((width - 1) >> TILE_SHIFT) + 1;
+    		tileFish = new int[getTileRows() * tileCols];
+    		tileHungry = new int[tileFish.length];
+    		tilePlankton = new double[tileFish.length];
+    		countHungrySquares();
     	}
     }
-    
+
     /**
-     * Returns an ocean square object from the ocean squares array at the given location 
+     * Returns an ocean square object from the ocean squares array at the given location
      * @param location The location of the required ocean square.
      * @return The ocean square object at the given location
      */
     public OceanSquare getOceanSquareAtLocation(Location location)
     {
-    	return oceanSquareArray[location.getRow()][location.getCol()];
+    	return new OceanSquare(this, location);
     }
-    
+
     /**
-     * Calls the regeneratePlankton method of each ocean square in the ocean squares array.
+     * Regenerates the plankton of every ocean square in the ocean, adding it up as it goes, see getTotalPlankton.
+     * Tiles where every square already has MAX_PLANKTON are skipped.
      */
     public void regeneratePlankton()
     {
-    	for(OceanSquare[] cols : oceanSquareArray)
+    	double total = 0;
+    	for(int tile = 0; tile < tileHungry.length; tile++)
     	{
-    		for(OceanSquare square : cols)
+    		int top = (tile / tileCols) << TILE_SHIFT;
+    		int left = (tile % tileCols) << TILE_SHIFT;
+    		int bottom = Math.min(height, top + (1 << TILE_SHIFT));
+    		int right = Math.min(width, left + (1 << TILE_SHIFT));
+    		if(tileHungry[tile] == 0)
     		{
-    			square.regeneratePlankton();
+    			total += tilePlankton[tile];
+    			continue;
     		}
+    		int hungry = 0;
+    		double tileTotal = 0;
+    		for(int row = top; row < bottom; row++)
+    		{
+    			for(int i = row * width + left; i < row * width + right; i++)
+    			{
+    				float plankton = regenerate(planktonLayer[i]);
+    				planktonLayer[i] = plankton;
+    				tileTotal += plankton;
+    				if(plankton < MAX_PLANKTON) hungry++;
+    			}
+    		}
+    		tileHungry[tile] = hungry;
+    		tilePlankton[tile] = tileTotal;
+    		total += tileTotal;
     	}
+    	setTotalPlankton(total);
     }
-    
+
+    /**
+     * Moves plankton between ocean squares for one step.
+     * Oceans that do not keep their plankton in an array have it copied into one and back, which is much slower,
+     * though the arrays are kept for the next step so that only the first transport allocates.
+     * @param transport How plankton moves.
+     */
+    public void transportPlankton(PlanktonTransport transport)
+    {
+    	forgetTotalPlankton();
+    	if(planktonLayer != null)
+    	{
+    		if(planktonSpare == null) planktonSpare = new float[planktonLayer.length];
+    		transport.apply(planktonLayer, planktonSpare, rockBoard, height, width);
+    		float transported[] = planktonSpare;
+    		planktonSpare = planktonLayer;
+    		planktonLayer = transported;
+    		countHungrySquares();
+    		return;
+    	}
+    	
+    	//The copies are kept from step to step, so that only the first transport allocates
+    	if(planktonSpare == null)
+    	{
+    		planktonSpare = new float[height * width];
+    		planktonCopy = new float[height * width];
+    		transportRocks = new Bitboard(height, width);
+    	}
+    	float levels[] = planktonCopy;
+    	transportRocks.clear();
+    	for(int row = 0; row < height; row++)
+    	{
+    		for(int col = 0; col < width; col++)
+    		{
+    			levels[row * width + col] = planktonAt(row, col);
+    			if(rockAt(row, col)) transportRocks.set(row, col);
+    		}
+    	}
+    	float transported[] = planktonSpare;
+    	transport.apply(levels, transported, transportRocks, height, width);
+    	for(int i = 0; i < levels.length; i++)
+    	{
+    		if(transported[i] != levels[i]) setPlanktonAt(i / width, i % width, transported[i]);
+    	}
+    }
+
+    /**
+     * Regenerates a plankton level by 0.1, to be called each step.
+     * Will not exceed a plankton level of 10.
+     * @param plankton The current plankton level.
+     * @return The regenerated plankton level.
+     */
+    protected static float regenerate(float plankton)
+    {
+    	if(plankton < MAX_PLANKTON) plankton += 0.1;
+    	return plankton;
+    }
+
+    /**
+     * The total is added up as plankton is regenerated and kept up to date as it is grazed, so reading it each step costs nothing.
+     * Only after plankton has changed some other way, such as by being transported or copied, are the squares added up again.
+     * @return The plankton of every ocean square in the ocean added up.
+     */
+    public double getTotalPlankton()
+    {
+    	if(totalPlanktonKnown) return totalPlankton;
+    	double total = 0;
+    	if(planktonLayer != null)
+    	{
+    		for(float plankton : planktonLayer)
+    		{
+    			total += plankton;
+    		}
+    	}
+    	else
+    	{
+    		for(int row = 0; row < height; row++)
+    		{
+    			for(int col = 0; col < width; col++)
+    			{
+    				total += planktonAt(row, col);
+    			}
+    		}
+    	}
+    	setTotalPlankton(total);
+    	return total;
+    }
+
+    /**
+     * Records the plankton of every square added up, to be called by regeneratePlankton once it has regenerated every square.
+     * @param total The total.
+     */
+    protected void setTotalPlankton(double total)
+    {
+    	totalPlankton = total;
+    	totalPlanktonKnown = true;
+    }
+
+    /**
+     * Marks the total plankton as unknown, to be called whenever plankton changes other than by regenerating or grazing.
+     */
+    protected void forgetTotalPlankton()
+    {
+    	totalPlanktonKnown = false;
+    }
+
+    /**
+     * Takes grazed plankton off the total plankton.
+     * @param amount The plankton grazed from a square.
+     */
+    protected void planktonGrazed(float amount)
+    {
+    	totalPlankton -= amount;
+    }
+
     /**
      * Checks if an ocean square at a given location is free.
      * @param location The location of the ocean square you wish to check.
@@ -80,33 +259,147 @@ public class Ocean
      */
     public Boolean isLocationEmpty(Location location)
     {
-    	return getOceanSquareAtLocation(location).isEmpty();
+    	return fishAt(location.getRow(), location.getCol()) == null && !rockAt(location.getRow(), location.getCol());
     }
-    
+
     /**
-     * Checks for and returns the location of an empty ocean square in the 8 squares around a location and the location itself. 
+     * Checks for and returns the location of an empty ocean square in the 8 squares around a location and the location itself.
      * @param centerLocation The location around which to check for empty ocean squares.
      * @return The location of an empty ocean square if available, else returns null.
      */
     public Location freeAdjacentLocation(Location centerLocation)
     {
-    	List<Location> adjacent = adjacentLocations(centerLocation);
-    	
-    	for(Location location : adjacent)
-    	{
-    		if(getOceanSquareAtLocation(location).isEmpty()) return location;
-    	}
+    	return freeAdjacentLocation(centerLocation, rand);
+    }
+
+    /**
+     * Checks for and returns the location of an empty ocean square around a location as freeAdjacentLocation does,
+     * drawing from the given random object.
+     * @param centerLocation The location around which to check for empty ocean squares.
+     * @param random The random object to choose between empty squares with.
+     * @return The location of an empty ocean square if available, else returns null.
+     */
+    public Location freeAdjacentLocation(Location centerLocation, Random random)
+    {
+    	int empty = emptyNeighbourMask(centerLocation);
+    	if(empty != 0) return neighbour(centerLocation, randomDirection(empty, random));
         // check whether current location is free
-        if(getOceanSquareAtLocation(centerLocation).isEmpty())
+        if(isLocationEmpty(centerLocation))
         {
             return centerLocation;
-        } 
+        }
         else
         {
             return null;
         }
     }
-    
+
+    /**
+     * Places a fish in a square if the square is empty. In an ocean whose fish act at once, see ConcurrentOcean,
+     * this is done in one step, so that no other fish can take the square between checking and placing.
+     * @param location The location to place the fish at.
+     * @param fish The fish.
+     * @return True if the fish was placed, false if the square was taken or holds a rock.
+     */
+    public boolean claim(Location location, Fish fish)
+    {
+    	if(!isLocationEmpty(location)) return false;
+    	fishArrives(location, fish);
+    	return true;
+    }
+
+    /**
+     * Places a fish in one of the empty squares around a location, or in the location itself if none are empty,
+     * trying the squares in a random order until one is claimed.
+     * @param centerLocation The location around which to place the fish.
+     * @param fish The fish.
+     * @param random The random object to order the squares with.
+     * @return The location the fish was placed at, or null if every square was taken.
+     */
+    public Location claimAdjacentLocation(Location centerLocation, Fish fish, Random random)
+    {
+    	int empty = emptyNeighbourMask(centerLocation);
+    	while(empty != 0)
+    	{
+    		int direction = randomDirection(empty, random);
+    		empty &= ~(1 << direction);
+    		Location location = neighbour(centerLocation, direction);
+    		if(claim(location, fish)) return location;
+    	}
+    	return claim(centerLocation, fish) ? centerLocation : null;
+    }
+
+    /**
+     * @return The random object fish acting in this ocean draw from, the shared one unless another has been set.
+     */
+    public Random getRandom()
+    {
+    	return random;
+    }
+
+    /**
+     * Sets the random object fish acting in this ocean draw from, see BandedStep.
+     * @param random The random object.
+     */
+    public void setRandom(Random random)
+    {
+    	this.random = random;
+    }
+
+    /**
+     * Finds up to a number of empty squares around a location in one pass, as freeAdjacentLocation would find them one at a time
+     * if each square it found were filled before looking for the next.
+     * The 8 squares around the location are used first in a random order, then if spill is true the 16 squares two away in a random order,
+     * and last the location itself.
+     * @param centerLocation The location around which to look.
+     * @param count The most squares to find.
+     * @param spill True to use the squares two away when the 8 around are full.
+     * @param found Set to the locations found, must have room for count.
+     * @param random The random object to choose the order from, see Fish.rand.
+     * @return The number of locations found, from 0 to count.
+     */
+    public int freeAdjacentLocations(Location centerLocation, int count, boolean spill, Location found[], Random random)
+    {
+    	int row = centerLocation.getRow();
+    	int col = centerLocation.getCol();
+    	int n = 0;
+    	int empty = emptyNeighbourMask(centerLocation);
+    	while(n < count && empty != 0)
+    	{
+    		int direction = randomDirection(empty, random);
+    		empty &= ~(1 << direction);
+    		found[n++] = neighbour(centerLocation, direction);
+    	}
+    	if(n < count && spill)
+    	{
+    		int outer = emptyOuterMask(row, col);
+    		while(n < count && outer != 0)
+    		{
+    			int square = randomDirection(outer, random);
+    			outer &= ~(1 << square);
+    			found[n++] = new Location(row + OUTER_ROW[square], col + OUTER_COL[square]);
+    		}
+    	}
+    	if(n < count && isLocationEmpty(centerLocation)) found[n++] = centerLocation;
+    	return n;
+    }
+
+    /**
+     * Finds which of the 16 squares two away from a square are empty.
+     * @return A mask with bit d set if square d of OUTER_ROW and OUTER_COL is in the ocean and holds no fish or rock.
+     */
+    private int emptyOuterMask(int row, int col)
+    {
+    	int mask = 0;
+    	for(int d = 0; d < OUTER_ROW.length; d++)
+    	{
+    		int r = row + OUTER_ROW[d];
+    		int c = col + OUTER_COL[d];
+    		if(r >= 0 && r < height && c >= 0 && c < width && fishAt(r, c) == null && !rockAt(r, c)) mask |= 1 << d;
+    	}
+    	return mask;
+    }
+
     /**
      * Generates a list of locations around a given location.
      * @param location The location around which to find locations.
@@ -136,21 +429,152 @@ public class Ocean
         Collections.shuffle(locations, rand);
         return locations;
     }
-    
+
+    /**
+     * Finds which of the 8 squares around a location hold fish of the given species.
+     * @param location The location to look around.
+     * @param speciesMask The species to look for, see Species.getMask().
+     * @return A mask with bit d set if the neighbour in direction d holds such a fish.
+     */
+    public int neighbourMask(Location location, int speciesMask)
+    {
+    	int row = location.getRow();
+    	int col = location.getCol();
+    	if(speciesBoards == null) return scanNeighbours(row, col, speciesMask);
+    	int mask = 0;
+    	for(int code = 1; code < speciesBoards.length; code++)
+    	{
+    		if((speciesMask & (1 << code)) != 0) mask |= speciesBoards[code].neighbours(row, col);
+    	}
+    	return mask;
+    }
+
+    /**
+     * Finds which of the 8 squares around a location are empty.
+     * @param location The location to look around.
+     * @return A mask with bit d set if the neighbour in direction d is in the ocean and holds no fish or rock.
+     */
+    public int emptyNeighbourMask(Location location)
+    {
+    	int row = location.getRow();
+    	int col = location.getCol();
+    	if(terrain != null) return unoccupied(row, col, terrain.passableNeighbours(row, col));
+    	if(speciesBoards == null) return scanNeighbours(row, col, -1);
+    	int full = outsideBoard.neighbours(row, col) | rockBoard.neighbours(row, col);
+    	for(int code = 1; code < speciesBoards.length; code++)
+    	{
+    		full |= speciesBoards[code].neighbours(row, col);
+    	}
+    	return ~full & 0xFF;
+    }
+
+    /**
+     * Leaves out of a mask of passable squares around a square those that hold fish, with no rock or bounds checks.
+     * @param passable A mask of the neighbours that are in the ocean and not rock.
+     * @return A mask with bit d set if the neighbour in direction d is passable and holds no fish.
+     */
+    private int unoccupied(int row, int col, int passable)
+    {
+    	if(speciesBoards != null)
+    	{
+    		for(int code = 1; code < speciesBoards.length; code++)
+    		{
+    			passable &= ~speciesBoards[code].neighbours(row, col);
+    		}
+    		return passable;
+    	}
+    	for(int bits = passable; bits != 0; bits &= bits - 1)
+    	{
+    		int d = Integer.numberOfTrailingZeros(bits);
+    		if(fishAt(row + DIRECTION_ROW[d], col + DIRECTION_COL[d]) != null) passable &= ~(1 << d);
+    	}
+    	return passable;
+    }
+
+    /**
+     * Builds a neighbour mask square by square, for subclasses that keep no bitboards.
+     * @param speciesMask The species to look for, or -1 to look for empty squares.
+     */
+    private int scanNeighbours(int row, int col, int speciesMask)
+    {
+    	int mask = 0;
+    	for(int d = 0; d < 8; d++)
+    	{
+    		int r = row + DIRECTION_ROW[d];
+    		int c = col + DIRECTION_COL[d];
+    		if(r >= 0 && r < height && c >= 0 && c < width)
+    		{
+    			Fish fish = fishAt(r, c);
+    			boolean match;
+    			if(speciesMask == -1) match = (fish == null && !rockAt(r, c));
+    			else match = (fish != null && (fish.getSpecies().getMask() & speciesMask) != 0);
+    			if(match) mask |= 1 << d;
+    		}
+    	}
+    	return mask;
+    }
+
+    /**
+     * @param location A location.
+     * @param direction A direction from 0 to 7.
+     * @return The location next to the given one in the given direction.
+     */
+    public Location neighbour(Location location, int direction)
+    {
+    	return new Location(location.getRow() + DIRECTION_ROW[direction], location.getCol() + DIRECTION_COL[direction]);
+    }
+
+    /**
+     * Picks one of the directions in a neighbour mask at random. Works for any mask of squares, such as an outer mask.
+     * @param mask A neighbour mask, must not be 0.
+     * @return The direction of a randomly chosen set bit.
+     */
+    public static int randomDirection(int mask)
+    {
+    	return randomDirection(mask, rand);
+    }
+
     /**
-     * Removes all fish from every ocean square in the ocean squares array.
+     * Picks one of the directions in a mask at random, drawing from the given random object.
+     * @param mask A neighbour mask, must not be 0.
+     * @param random The random object to draw from.
+     * @return The direction of a randomly chosen set bit.
+     */
+    public static int randomDirection(int mask, Random random)
+    {
+    	for(int skip = random.nextInt(Integer.bitCount(mask)); skip > 0; skip--)
+    	{
+    		mask &= mask - 1;
+    	}
+    	return Integer.numberOfTrailingZeros(mask);
+    }
+
+    /**
+     * Removes all fish from every ocean square in the ocean.
      */
     public void clearFish()
     {
-    	for(OceanSquare[] row : oceanSquareArray)
+    	//Only tiles with fish in them need clearing
+    	for(int tile = 0; tile < tileFish.length; tile++)
     	{
-    		for(OceanSquare square : row)
+    		if(tileFish[tile] == 0) continue;
+    		int top = (tile / tileCols) << TILE_SHIFT;
+    		int left = (tile % tileCols) << TILE_SHIFT;
+    		int bottom = Math.min(height, top + (1 << TILE_SHIFT));
+    		int right = Math.min(width, left + (1 << TILE_SHIFT));
+    		for(int row = top; row < bottom; row++)
     		{
-    			square.fishLeaves();
+    			Arrays.fill(fishLayer, row * width + left, row * width + right, null);
     		}
+    		tileFish[tile] = 0;
     	}
+    	for(int code = 1; code < speciesBoards.length; code++)
+    	{
+    		speciesBoards[code].clear();
+    	}
+    	if(sharkRepulsion != null) sharkRepulsion.clear();
     }
-    
+
     /**
      * Adds a fish object to the ocean square at the location the fish itself stores.
      * @param fish The fish to add.
@@ -158,23 +582,307 @@ public class Ocean
     public void addFish(Fish fish)
     {
     	//if(GetOceanSquareAtLocation(fish.location).IsEmpty())
-    		getOceanSquareAtLocation(fish.location).fishArrives(fish);
+    		fishArrives(fish.location, fish);
     }
-    
+
+    /**
+     * Places a fish in the ocean square at the given location.
+     * @param location The location the fish arrives at.
+     * @param fish The fish to place.
+     */
+    public void fishArrives(Location location, Fish fish)
+    {
+    	int row = location.getRow();
+    	int col = location.getCol();
+    	if(sharkRepulsion != null)
+    	{
+    		if(fishAt(row, col) instanceof Shark) sharkRepulsion.sharkLeaves(row, col);
+    		if(fish instanceof Shark) sharkRepulsion.sharkArrives(row, col);
+    	}
+    	setFishAt(row, col, fish);
+    }
+
+    /**
+     * Removes any fish from the ocean square at the given location.
+     * @param location The location the fish leaves.
+     */
+    public void fishLeaves(Location location)
+    {
+    	int row = location.getRow();
+    	int col = location.getCol();
+    	if(sharkRepulsion != null && fishAt(row, col) instanceof Shark) sharkRepulsion.sharkLeaves(row, col);
+    	setFishAt(row, col, null);
+    }
+
     /**
      * Return the fish at the given location, if any.
      * @param location The location at which to get the fish.
      * @return The fish at the given location, or null if there is none.
      */
     public Fish getFishAt(Location location)
-    {       	
-    	if(getOceanSquareAtLocation(location).hasFish())
+    {
+    	return fishAt(location.getRow(), location.getCol());
+    }
+
+    /**
+     * Checks for a rock at the given location.
+     * @param location The location to check.
+     * @return True if a rock is present, false if not.
+     */
+    public Boolean hasRock(Location location)
+    {
+    	return rockAt(location.getRow(), location.getCol());
+    }
+
+    /**
+     * Places a rock at the given location.
+     * @param location The location of the rock.
+     */
+    public void addRock(Location location)
+    {
+    	if(terrain != null) terrain.addRock(location.getRow(), location.getCol());
+    	setRockAt(location.getRow(), location.getCol(), true);
+    }
+
+    /**
+     * Lays terrain under the ocean, adding its rocks, and adding any rocks already in the ocean to the terrain.
+     * The same terrain should be given to the current and updated ocean, which then share its rocks rather than keeping their own
+     * where they can. Rocks added to the ocean later are added to the terrain too.
+     * @param terrain The terrain, of the same height and width as the ocean.
+     */
+    public void setTerrain(Terrain terrain)
+    {
+    	for(int row = 0; row < height; row++)
     	{
-    		return getOceanSquareAtLocation(location).getFish();
+    		for(int col = 0; col < width; col++)
+    		{
+    			if(rockAt(row, col)) terrain.addRock(row, col);
+    			else if(terrain.isRock(row, col)) setRockAt(row, col, true);
+    		}
     	}
-    	else return null;
+    	this.terrain = terrain;
+    	if(rockBoard != null) rockBoard = terrain.getRocks();
     }
-    
+
+    /**
+     * @return The terrain under the ocean, or null if none has been laid.
+     */
+    public Terrain getTerrain()
+    {
+    	return terrain;
+    }
+
+    /**
+     * Returns the plankton level at the given location.
+     * @param location The location to check.
+     * @return Plankton level of the ocean square.
+     */
+    public float getPlanktonLevel(Location location)
+    {
+    	return planktonAt(location.getRow(), location.getCol());
+    }
+
+    /**
+     * Reduces the plankton level at a location by a specific amount. Will not go below 0 level.
+     * @param location The location to reduce the plankton of.
+     * @param amount The amount to reduce to plankton level by.
+     */
+    public void reducePlankton(Location location, int amount)
+    {
+    	float plankton = planktonAt(location.getRow(), location.getCol());
+    	if(plankton > 0)
+    	{
+    		float grazed = plankton - amount;
+    		setPlanktonAt(location.getRow(), location.getCol(), grazed);
+    		planktonGrazed(plankton - grazed);
+    	}
+    }
+
+    /**
+     * Copies the fish, rocks and plankton of every square into another ocean, leaving this ocean as it is.
+     * Only squares that differ are written, so copying into the same ocean step after step writes little more than the squares that changed.
+     * @param copy The ocean to copy into, of the same height and width.
+     */
+    public void copyTo(Ocean copy)
+    {
+    	copy.forgetTotalPlankton();
+    	for(int row = 0; row < height; row++)
+    	{
+    		for(int col = 0; col < width; col++)
+    		{
+    			Fish fish = fishAt(row, col);
+    			if(copy.fishAt(row, col) != fish) copy.setFishAt(row, col, fish);
+    			boolean rock = rockAt(row, col);
+    			if(copy.rockAt(row, col) != rock) copy.setRockAt(row, col, rock);
+    			float plankton = planktonAt(row, col);
+    			if(copy.planktonAt(row, col) != plankton) copy.setPlanktonAt(row, col, plankton);
+    		}
+    	}
+    }
+
+    /**
+     * Cell methods, all other access to the ocean layers goes through these.
+     */
+
+    protected Fish fishAt(int row, int col)
+    {
+    	return fishLayer[row * width + col];
+    }
+
+    protected void setFishAt(int row, int col, Fish fish)
+    {
+    	int i = row * width + col;
+    	if(fishLayer[i] != null)
+    	{
+    		speciesBoards[fishLayer[i].getSpecies().getCode()].clear(row, col);
+    		tileFish[tileOf(row, col)]--;
+    	}
+    	if(fish != null)
+    	{
+    		speciesBoards[fish.getSpecies().getCode()].set(row, col);
+    		tileFish[tileOf(row, col)]++;
+    	}
+    	fishLayer[i] = fish;
+    }
+
+    protected boolean rockAt(int row, int col)
+    {
+    	return rockBoard.get(row, col);
+    }
+
+    protected void setRockAt(int row, int col, boolean rock)
+    {
+    	if(rock) rockBoard.set(row, col);
+    	else rockBoard.clear(row, col);
+    }
+
+    protected float planktonAt(int row, int col)
+    {
+    	return planktonLayer[row * width + col];
+    }
+
+    protected void setPlanktonAt(int row, int col, float plankton)
+    {
+    	int i = row * width + col;
+    	int tile = tileOf(row, col);
+    	if(planktonLayer[i] < MAX_PLANKTON) tileHungry[tile]--;
+    	if(plankton < MAX_PLANKTON) tileHungry[tile]++;
+    	tilePlankton[tile] += plankton - planktonLayer[i];
+    	planktonLayer[i] = plankton;
+    }
+
+    private int tileOf(int row, int col)
+    {
+    	return (row >> TILE_SHIFT) * tileCols + (col >> TILE_SHIFT);
+    }
+
+    /**
+     * Recounts the squares in each tile with less than MAX_PLANKTON, and adds up the plankton of each tile again.
+     */
+    private void countHungrySquares()
+    {
+    	Arrays.fill(tileHungry, 0);
+    	Arrays.fill(tilePlankton, 0);
+    	for(int i = 0; i < planktonLayer.length; i++)
+    	{
+    		int tile = tileOf(i / width, i % width);
+    		if(planktonLayer[i] < MAX_PLANKTON) tileHungry[tile]++;
+    		tilePlankton[tile] += planktonLayer[i];
+    	}
+    }
+
+    /**
+     * @return The number of tiles down the ocean, each 2^TILE_SHIFT squares high except perhaps the last.
+     */
+    public int getTileRows()
+    {
+    	return ((height - 1) >> TILE_SHIFT) + 1;
+    }
+
+    /**
+     * @return The number of tiles across the ocean, each 2^TILE_SHIFT squares wide except perhaps the last.
+     */
+    public int getTileCols()
+    {
+    	return ((width - 1) >> TILE_SHIFT) + 1;
+    }
+
+    /**
+     * @return False if there are certainly no fish in a tile, oceans that do not count fish by tile always return true.
+     */
+    public boolean hasFishInTile(int tileRow, int tileCol)
+    {
+    	if(tileFish == null) return true;
+    	return tileFish[tileRow * tileCols + tileCol] != 0;
+    }
+
+    /**
+     * A tile at rest has no fish and MAX_PLANKTON in every square, so nothing in it changes until a fish arrives.
+     * @return True if a tile is at rest, oceans that do not keep track of tiles always return false.
+     */
+    public boolean isTileAtRest(int tileRow, int tileCol)
+    {
+    	if(tileFish == null) return false;
+    	int tile = tileRow * tileCols + tileCol;
+    	return tileFish[tile] == 0 && tileHungry[tile] == 0;
+    }
+
+    /**
+     * @return The index of where fish are, shared by the current and updated ocean, or null if there is none.
+     */
+    public SpatialIndex getSpatialIndex()
+    {
+    	return spatialIndex;
+    }
+
+    /**
+     * Sets the index of where fish are, the same index should be given to the current and updated ocean.
+     * @param spatialIndex The index, or null for none.
+     */
+    public void setSpatialIndex(SpatialIndex spatialIndex)
+    {
+    	this.spatialIndex = spatialIndex;
+    }
+
+    /**
+     * @param hunter A species of fish.
+     * @return The field of distances to the prey of that species, shared by the current and updated ocean, or null if it does not hunt.
+     */
+    public FlowField getPreyField(Species hunter)
+    {
+    	if(preyFields == null) return null;
+    	return preyFields[hunter.getCode()];
+    }
+
+    /**
+     * Sets the field of distances to the prey of a species, the same field should be given to the current and updated ocean.
+     * @param hunter A species of fish.
+     * @param preyField The field, or null for none.
+     */
+    public void setPreyField(Species hunter, FlowField preyField)
+    {
+    	if(preyFields == null) preyFields = new FlowField[Species.values().length + 1];
+    	preyFields[hunter.getCode()] = preyField;
+    }
+
+    /**
+     * @return The field of how crowded each square is by sharks, or null if it is not kept.
+     */
+    public RepulsionField getSharkRepulsion()
+    {
+    	return sharkRepulsion;
+    }
+
+    /**
+     * Sets the field of how crowded each square is by sharks, which the ocean then keeps up to date as sharks arrive and leave.
+     * Each ocean needs its own field, and it should be set before any fish are added.
+     * @param sharkRepulsion The field, or null for none.
+     */
+    public void setSharkRepulsion(RepulsionField sharkRepulsion)
+    {
+    	this.sharkRepulsion = sharkRepulsion;
+    }
+
     /**
      * @return The height of the ocean.
      */
@@ -183,7 +891,7 @@ public class Ocean
         // put something here
         return height;
     }
-    
+
     /**
      * @return The width of the ocean.
      */
@@ -192,4 +900,22 @@ public class Ocean
         // and something here
         return width;
     }
+
+    /**
+     * Starts a step in which this ocean is both the current and the updated ocean, see Simulator.singleBuffer.
+     * Fish that move or are born in the step are stamped with the new move stamp, so fish yet to act can tell them apart
+     * from the fish they would have seen in a separate current ocean.
+     */
+    public void beginStepInPlace()
+    {
+    	moveStamp++;
+    }
+
+    /**
+     * @return The move stamp of the step running in place, 0 if the ocean has never been updated in place.
+     */
+    public int getMoveStamp()
+    {
+    	return moveStamp;
+    }
 }
@@ -0,0 +1,38 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Watches an ocean file mapped by a running simulation using OceanType.MAPPED, from a separate process.
+ * The file is mapped read only, so the monitor cannot disturb the simulation, and is deleted when the simulation exits, see OffHeapOcean.createMapped.
+ * Prints the population of each species and the mean plankton level once a second.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class OceanMonitor
+{
+	/**
+	 * Arguments: the ocean file to watch, and optionally the number of reports to print.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		OffHeapOcean.Snapshot ocean = new OffHeapOcean.Snapshot(new File(args[0]));
+		int reports = (args.length > 1) ? Integer.parseInt(args[1]) : Integer.MAX_VALUE;
+		for(int r = 0; r < reports; r++)
+		{
+			int counts[] = ocean.countSpecies();
+			StringBuffer buffer = new StringBuffer();
+			for(Species species : Species.values())
+			{
+				buffer.append(species.name());
+				buffer.append(": ");
+				buffer.append(counts[species.getCode()]);
+				buffer.append(' ');
+			}
+			buffer.append("Plankton: ");
+			buffer.append(String.format("%.2f", ocean.meanPlankton()));
+			System.out.println(buffer.toString());
+			Thread.sleep(1000);
+		}
+	}
+}
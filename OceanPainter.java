@@ -0,0 +1,97 @@
+import java.awt.Color;
+import java.awt.Graphics;
+
+/**
+ * Paints an ocean onto an image, one coloured rectangle per square, counting the fish it paints.
+ * Used by SimulatorView, and can paint onto any image so that an ocean can be drawn without a window.
+ * Tiles of the ocean that are at rest are only painted when they first come to rest, as nothing in them changes after that.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class OceanPainter
+{
+	private static final Rock ROCK = new Rock(); //Rocks carry no state of their own, so one gives the colour of them all
+	private Graphics g; //Where the ocean is painted
+	private int xScale; //The width of a square in pixels
+	private int yScale; //The height of a square in pixels
+	private boolean drawnAtRest[]; //Whether each tile was at rest when it was last painted, null until the first painting
+
+	/**
+	 * Sets where the ocean is painted. The whole ocean will be painted next time.
+	 * @param g The graphics of the image to paint onto.
+	 * @param xScale The width of a square in pixels.
+	 * @param yScale The height of a square in pixels.
+	 */
+	public void setTarget(Graphics g, int xScale, int yScale)
+	{
+		this.g = g;
+		this.xScale = xScale;
+		this.yScale = yScale;
+		drawnAtRest = null;
+	}
+
+	/**
+	 * Paints every square of the ocean that may have changed since it was last painted.
+	 * @param ocean The ocean to paint, which must be the same size each time.
+	 * @param stats Counts each fish painted, every fish is painted as tiles at rest have none.
+	 */
+	public void paint(Ocean ocean, OceanStats stats)
+	{
+		if(drawnAtRest == null) drawnAtRest = new boolean[ocean.getTileRows() * ocean.getTileCols()];
+
+		int tileSize = 1 << Ocean.TILE_SHIFT;
+		for(int tileRow = 0; tileRow < ocean.getTileRows(); tileRow++)
+		{
+			for(int tileCol = 0; tileCol < ocean.getTileCols(); tileCol++)
+			{
+				int tile = tileRow * ocean.getTileCols() + tileCol;
+				boolean atRest = ocean.isTileAtRest(tileRow, tileCol);
+				if(atRest && drawnAtRest[tile]) continue;
+				drawnAtRest[tile] = atRest;
+				int lastRow = Math.min(ocean.getHeight(), (tileRow + 1) * tileSize);
+				int lastCol = Math.min(ocean.getWidth(), (tileCol + 1) * tileSize);
+				for(int row = tileRow * tileSize; row < lastRow; row++)
+				{
+					for(int col = tileCol * tileSize; col < lastCol; col++)
+					{
+						paintSquare(ocean, stats, row, col);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Paints one square of the ocean, counting any fish in it.
+	 * The square is read through the ocean's cell methods, so painting a frame allocates no squares or locations.
+	 */
+	private void paintSquare(Ocean ocean, OceanStats stats, int row, int col)
+	{
+		Fish fish = ocean.fishAt(row, col);
+		if(fish != null)
+		{
+			stats.incrementCount(fish.getClass());
+			drawMark(col, row, fish.getColour());
+		}
+		else if(ocean.rockAt(row, col))
+		{
+			drawMark(col, row, ROCK.getColour());
+		}
+		else
+		{
+			float planktonFloat = (float) Math.floor(ocean.planktonAt(row, col)) / 40;
+			if(planktonFloat < 0) planktonFloat = 0f;
+			drawMark(col, row, Color.getHSBColor(0.50f, planktonFloat, 1f));
+		}
+	}
+
+	/**
+	 * Paint one grid location in a given colour.
+	 */
+	private void drawMark(int x, int y, Color color)
+	{
+		g.setColor(color);
+		g.fillRect(x * xScale, y * yScale, xScale-1, yScale-1);
+	}
+}
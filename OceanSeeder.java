@@ -0,0 +1,168 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the starting line up of fish for an ocean quickly enough for very large oceans.
+ * Rather than drawing for every square whether it has a fish, the number of empty squares before the next fish is drawn directly,
+ * so the time taken depends on the number of fish rather than the size of the ocean.
+ *
+ * The ocean is split into bands of rows, each with its own random object seeded from the seed of the whole ocean,
+ * and the bands are generated in parallel on the Workers threads. A band always comes out the same for the same seed,
+ * however many threads there are and whichever rows are asked for, so a shard of the ocean can be generated on its own.
+ *
+ * The fish of each band are shuffled and the bands are put in a random order, rather than shuffling every fish at once.
+ * Fish only meet their neighbours, so this still gives any two fish that could meet a random order.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class OceanSeeder
+{
+	public static final int BAND_ROWS = 64; //The number of rows in a band
+
+	//The chance of a square starting with each species, as in the original populate which tried each species in turn
+	public static final double SHARK_DENSITY = 0.0015;
+	public static final double HERRING_DENSITY = (1 - SHARK_DENSITY) * 0.004;
+	public static final double GROPER_DENSITY = (1 - SHARK_DENSITY) * (1 - 0.004) * 0.0015;
+	public static final double DENSITY = SHARK_DENSITY + HERRING_DENSITY + GROPER_DENSITY; //The chance of a square starting with any fish
+
+	private long seed;
+	private int height;
+	private int width;
+
+	/**
+	 * Create a seeder for an ocean.
+	 * @param seed The seed every band's random object is made from.
+	 * @param height The height of the whole ocean.
+	 * @param width The width of the whole ocean.
+	 */
+	public OceanSeeder(long seed, int height, int width)
+	{
+		this.seed = seed;
+		this.height = height;
+		this.width = width;
+	}
+
+	/**
+	 * Generates the fish for some rows of the ocean, in a random order. The fish are not added to any ocean.
+	 * @param firstRow The first row to generate fish for.
+	 * @param endRow The row after the last to generate fish for.
+	 * @param rocks An ocean whose rocks are left empty, or null to leave no squares empty.
+	 * @return The fish, located in the rows of the whole ocean.
+	 */
+	public List<Fish> generate(int firstRow, int endRow, Ocean rocks)
+	{
+		//Put every band in a random order, then keep those that overlap the rows
+		int bandCount = (height + BAND_ROWS - 1) / BAND_ROWS;
+		List<Integer> order = new ArrayList<Integer>();
+		for(int band = 0; band < bandCount; band++)
+		{
+			order.add(band);
+		}
+		Collections.shuffle(order, new Random(seed));
+		List<Integer> bands = new ArrayList<Integer>();
+		for(int band : order)
+		{
+			if(band * BAND_ROWS < endRow && (band + 1) * BAND_ROWS > firstRow) bands.add(band);
+		}
+
+		List<List<Fish>> bandFish = new ArrayList<List<Fish>>();
+		for(int b = 0; b < bands.size(); b++)
+		{
+			bandFish.add(null);
+		}
+		AtomicInteger next = new AtomicInteger();
+		List<Generator> generators = new ArrayList<Generator>();
+		for(int t = 0; t < Math.min(Workers.getThreads(), Math.max(1, bands.size())); t++)
+		{
+			generators.add(new Generator(bands, bandFish, next, firstRow, endRow, rocks));
+		}
+		Workers.runAll(generators);
+
+		List<Fish> fish = new ArrayList<Fish>();
+		for(List<Fish> someFish : bandFish)
+		{
+			fish.addAll(someFish);
+		}
+		return fish;
+	}
+
+	/**
+	 * Generates the fish of one band in a random order, keeping only those in the given rows and not on a rock.
+	 * Every fish of the band is drawn whichever are kept, so that the random numbers always line up.
+	 */
+	private List<Fish> generateBand(int band, int firstRow, int endRow, Ocean rocks)
+	{
+		Random rand = new Random(bandSeed(band));
+		List<Fish> fish = new ArrayList<Fish>();
+		double logEmpty = Math.log(1 - DENSITY);
+		long square = (long) band * BAND_ROWS * width;
+		long end = (long) Math.min(height, (band + 1) * BAND_ROWS) * width;
+		while(true)
+		{
+			//Skip the squares before the next fish, each of which is empty with the chance 1 - DENSITY
+			square += (long) (Math.log(1 - rand.nextDouble()) / logEmpty);
+			if(square >= end) break;
+			int row = (int) (square / width);
+			int col = (int) (square % width);
+			double kind = rand.nextDouble() * DENSITY;
+			Species species;
+			if(kind < SHARK_DENSITY) species = Species.SHARK;
+			else if(kind < SHARK_DENSITY + HERRING_DENSITY) species = Species.HERRING;
+			else species = Species.GROPER;
+			Location location = new Location(row, col);
+			Fish newFish = species.createFish(rand, location);
+			if(row >= firstRow && row < endRow && (rocks == null || !rocks.hasRock(location))) fish.add(newFish);
+			square++;
+		}
+		Collections.shuffle(fish, rand);
+		return fish;
+	}
+
+	/**
+	 * @return The seed of a band's random object, mixed so that the bands of neighbouring seeds draw unrelated numbers.
+	 */
+	private long bandSeed(int band)
+	{
+		long mixed = seed + (band + 1) * 0x9E3779B97F4A7C15L;
+		mixed = (mixed ^ (mixed >>> 30)) * 0xBF58476D1CE4E5B9L;
+		mixed = (mixed ^ (mixed >>> 27)) * 0x94D049BB133111EBL;
+		return mixed ^ (mixed >>> 31);
+	}
+
+	/**
+	 * Generates bands one after another until there are none left.
+	 */
+	private class Generator implements Callable<Void>
+	{
+		private List<Integer> bands; //The bands to generate, in the order their fish are returned
+		private List<List<Fish>> bandFish; //Set to the fish of each band
+		private AtomicInteger next; //The next of the bands for a generator to take
+		private int firstRow;
+		private int endRow;
+		private Ocean rocks;
+
+		private Generator(List<Integer> bands, List<List<Fish>> bandFish, AtomicInteger next, int firstRow, int endRow, Ocean rocks)
+		{
+			this.bands = bands;
+			this.bandFish = bandFish;
+			this.next = next;
+			this.firstRow = firstRow;
+			this.endRow = endRow;
+			this.rocks = rocks;
+		}
+
+		public Void call()
+		{
+			for(int b = next.getAndIncrement(); b < bands.size(); b = next.getAndIncrement())
+			{
+				bandFish.set(b, generateBand(bands.get(b), firstRow, endRow, rocks));
+			}
+			return null;
+		}
+	}
+}
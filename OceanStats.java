@@ -117,14 +117,28 @@ public class OceanStats
     private void generateCounts(Ocean ocean)
     {
         reset();
-        for(int row = 0; row < ocean.getHeight(); row++)
+        // only look in the tiles of the ocean that have fish in them
+        int tileSize = 1 << Ocean.TILE_SHIFT;
+        for(int tileRow = 0; tileRow < ocean.getTileRows(); tileRow++)
         {
-            for(int col = 0; col < ocean.getWidth(); col++)
+            for(int tileCol = 0; tileCol < ocean.getTileCols(); tileCol++)
             {
-                Fish fish = ocean.getFishAt(new Location(row, col));
-                if(fish != null) 
+                if(!ocean.hasFishInTile(tileRow, tileCol))
                 {
-                    incrementCount(fish.getClass());
+                    continue;
+                }
+                int lastRow = Math.min(ocean.getHeight(), (tileRow + 1) * tileSize);
+                int lastCol = Math.min(ocean.getWidth(), (tileCol + 1) * tileSize);
+                for(int row = tileRow * tileSize; row < lastRow; row++)
+                {
+                    for(int col = tileCol * tileSize; col < lastCol; col++)
+                    {
+                        Fish fish = ocean.getFishAt(new Location(row, col));
+                        if(fish != null) 
+                        {
+                            incrementCount(fish.getClass());
+                        }
+                    }
                 }
             }
         }
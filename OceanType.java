@@ -0,0 +1,91 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Enum for choosing how an ocean stores its squares.
+ * @author Matthew Maglennon
+ *
+ */
+
+public enum OceanType
+{
+	/**
+	 * Every square is allocated up front.
+	 */
+	DENSE
+	{
+		public Ocean createOcean(int height, int width)
+		{
+			return new Ocean(height, width);
+		}
+	},
+	/**
+	 * Squares are allocated in chunks as they are touched, for very large mostly empty oceans.
+	 */
+	SPARSE
+	{
+		public Ocean createOcean(int height, int width)
+		{
+			return new SparseOcean(height, width);
+		}
+	},
+	/**
+	 * The plankton, rock and occupancy layers are kept in direct buffers outside the heap.
+	 */
+	OFF_HEAP
+	{
+		public Ocean createOcean(int height, int width)
+		{
+			return new OffHeapOcean(height, width);
+		}
+	},
+	/**
+	 * As OFF_HEAP but the layers are memory mapped from files, so other processes can watch them.
+	 */
+	MAPPED
+	{
+		public Ocean createOcean(int height, int width)
+		{
+			try
+			{
+				return OffHeapOcean.createMapped(height, width);
+			}
+			catch(IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		public OceanType getSnapshotType()
+		{
+			//snapshots are only for this process, so they need no files
+			return OFF_HEAP;
+		}
+	},
+	/**
+	 * Fish claim squares with compare and set, so that they can act at once on several threads, see ConcurrentActing.
+	 */
+	CONCURRENT
+	{
+		public Ocean createOcean(int height, int width)
+		{
+			return new ConcurrentOcean(height, width);
+		}
+	};
+
+	/**
+	 * Creates an ocean of this type.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 * @return The new ocean.
+	 */
+	public abstract Ocean createOcean(int height, int width);
+
+	/**
+	 * @return The type of ocean to copy oceans of this type into for a SnapshotPipeline, one that stores its squares the same way.
+	 */
+	public OceanType getSnapshotType()
+	{
+		return this;
+	}
+}
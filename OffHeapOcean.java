@@ -0,0 +1,395 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An ocean that keeps its plankton, rock and occupancy layers outside the Java heap, so they add nothing to garbage collection.
+ * The layers are either in direct buffers or memory mapped from a file.
+ * A mapped file can be attached read only by another process, for example OceanMonitor, to watch a running simulation.
+ * Fish themselves are objects and stay on the heap, the occupancy layer records the species of fish in each square.
+ * The fish are found from their square through a hash table holding only the squares that have fish,
+ * so the heap grows with the number of fish rather than the size of the ocean.
+ *
+ * File layout, all big endian: int magic, int height, int width, int reserved,
+ * then a float of plankton, a byte of rock and a byte of species code for each square, one layer after another.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class OffHeapOcean extends Ocean
+{
+	public static final int MAGIC = 0x46495348; //"FISH", marks an ocean file
+	public static final int HEADER_SIZE = 16;
+
+	private static int mappedOceans = 0; //The number of oceans mapped to files by this process so far
+
+	private FloatBuffer planktonLayer; //Plankton level of each square
+	private ByteBuffer rockLayer; //1 where a square has a rock
+	private ByteBuffer occupancyLayer; //Species code of the fish in each square
+	private FishTable fishTable = new FishTable(); //The fish in each square that has one, which must stay on the heap
+	private int squares; //The number of squares in the ocean
+	private int width;
+
+	/**
+	 * Construct an ocean with its layers in direct buffers.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 */
+	public OffHeapOcean(int height, int width)
+	{
+		super(height, width, false);
+		this.width = width;
+		squares = squares(height, width);
+		planktonLayer = ByteBuffer.allocateDirect(squares * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		rockLayer = ByteBuffer.allocateDirect(squares);
+		occupancyLayer = ByteBuffer.allocateDirect(squares);
+		fillPlankton(INITIAL_PLANKTON);
+	}
+
+	/**
+	 * Construct an ocean with its layers memory mapped from a file, which is created or overwritten and cut to the length of the ocean.
+	 * The file is left in place once the ocean is done with.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 * @param file The file to map.
+	 * @throws IOException If the file cannot be mapped.
+	 */
+	public OffHeapOcean(int height, int width, File file) throws IOException
+	{
+		super(height, width, false);
+		this.width = width;
+		squares = squares(height, width);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try
+		{
+			raf.setLength(HEADER_SIZE + squares * 6L); //an old file of a larger ocean would otherwise keep its tail
+			FileChannel channel = raf.getChannel();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+			header.putInt(MAGIC).putInt(height).putInt(width).putInt(0);
+			planktonLayer = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE, squares * 4L).asFloatBuffer();
+			rockLayer = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + squares * 4L, squares);
+			occupancyLayer = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + squares * 5L, squares);
+		}
+		finally
+		{
+			//Mappings stay valid after the channel is closed
+			raf.close();
+		}
+		fillPlankton(INITIAL_PLANKTON);
+		for(int i = 0; i < squares; i++)
+		{
+			rockLayer.put(i, (byte) 0);
+			occupancyLayer.put(i, Species.NONE);
+		}
+	}
+
+	/**
+	 * Construct an ocean mapped to the next file in the ocean directory, ocean-0.map, ocean-1.map and so on.
+	 * The directory is given by the fishsim.oceanDir system property, or is the temporary directory.
+	 * The file is only needed while the simulation runs, for OceanMonitor to watch, so it is deleted when the process exits.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 * @return The new ocean.
+	 * @throws IOException If the file cannot be mapped.
+	 */
+	public static OffHeapOcean createMapped(int height, int width) throws IOException
+	{
+		File directory = new File(System.getProperty("fishsim.oceanDir", System.getProperty("java.io.tmpdir")));
+		File file = new File(directory, "ocean-" + (mappedOceans++) + ".map");
+		OffHeapOcean ocean = new OffHeapOcean(height, width, file);
+		file.deleteOnExit();
+		return ocean;
+	}
+
+	/**
+	 * Regenerates the plankton of every ocean square in the ocean.
+	 */
+	public void regeneratePlankton()
+	{
+		double total = 0;
+		for(int i = 0; i < squares; i++)
+		{
+			float plankton = regenerate(planktonLayer.get(i));
+			planktonLayer.put(i, plankton);
+			total += plankton;
+		}
+		setTotalPlankton(total);
+	}
+
+	/**
+	 * Removes all fish from every ocean square in the ocean.
+	 */
+	public void clearFish()
+	{
+		fishTable.clear(occupancyLayer);
+		if(getSharkRepulsion() != null) getSharkRepulsion().clear();
+	}
+
+	/**
+	 * Returns the species of fish at a square using only the occupancy layer.
+	 * @return The species code, or Species.NONE.
+	 */
+	public byte getSpeciesCodeAt(int row, int col)
+	{
+		return occupancyLayer.get(row * width + col);
+	}
+
+	protected Fish fishAt(int row, int col)
+	{
+		int i = row * width + col;
+		if(occupancyLayer.get(i) == Species.NONE) return null; //most squares are empty, so look in the table only when needed
+		return fishTable.get(i);
+	}
+
+	protected void setFishAt(int row, int col, Fish fish)
+	{
+		int i = row * width + col;
+		if(fish == null) fishTable.remove(i);
+		else fishTable.put(i, fish);
+		occupancyLayer.put(i, Species.codeOf(fish));
+	}
+
+	protected boolean rockAt(int row, int col)
+	{
+		return rockLayer.get(row * width + col) != 0;
+	}
+
+	protected void setRockAt(int row, int col, boolean rock)
+	{
+		rockLayer.put(row * width + col, (byte) (rock ? 1 : 0));
+	}
+
+	protected float planktonAt(int row, int col)
+	{
+		return planktonLayer.get(row * width + col);
+	}
+
+	protected void setPlanktonAt(int row, int col, float plankton)
+	{
+		planktonLayer.put(row * width + col, plankton);
+	}
+
+	private void fillPlankton(float plankton)
+	{
+		for(int i = 0; i < squares; i++)
+		{
+			planktonLayer.put(i, plankton);
+		}
+	}
+
+	/**
+	 * @return The number of squares in an ocean, checking the plankton layer fits in one buffer.
+	 */
+	private static int squares(int height, int width)
+	{
+		long squares = (long) height * width;
+		if(squares * 4 > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Ocean of " + height + "x" + width + " is too large for an off heap ocean");
+		return (int) squares;
+	}
+
+	/**
+	 * The fish of an ocean by square, in an open addressing hash table with linear probing.
+	 * Its arrays grow with the number of fish, and putting and removing fish allocates nothing until they have to grow.
+	 */
+	private static class FishTable
+	{
+		private static final int INITIAL_CAPACITY = 64; //Must be a power of 2
+
+		private int squares[] = new int[INITIAL_CAPACITY]; //The square of each slot's fish
+		private Fish fish[] = new Fish[INITIAL_CAPACITY]; //The fish in each slot, null for an empty slot
+		private int size; //The number of fish in the table
+
+		/**
+		 * @return The fish in a square, or null if there is none.
+		 */
+		private Fish get(int square)
+		{
+			int mask = fish.length - 1;
+			for(int slot = home(square, mask); fish[slot] != null; slot = (slot + 1) & mask)
+			{
+				if(squares[slot] == square) return fish[slot];
+			}
+			return null;
+		}
+
+		/**
+		 * Puts a fish in a square, replacing any fish already there.
+		 */
+		private void put(int square, Fish newFish)
+		{
+			if(2 * (size + 1) > fish.length) resize(fish.length * 2);
+			int mask = fish.length - 1;
+			int slot = home(square, mask);
+			while(fish[slot] != null)
+			{
+				if(squares[slot] == square)
+				{
+					fish[slot] = newFish;
+					return;
+				}
+				slot = (slot + 1) & mask;
+			}
+			squares[slot] = square;
+			fish[slot] = newFish;
+			size++;
+		}
+
+		/**
+		 * Removes the fish in a square, if there is one.
+		 * The fish after it in its run of full slots are shifted back, so that lookups never need markers for removed fish.
+		 */
+		private void remove(int square)
+		{
+			int mask = fish.length - 1;
+			int slot = home(square, mask);
+			while(fish[slot] != null && squares[slot] != square)
+			{
+				slot = (slot + 1) & mask;
+			}
+			if(fish[slot] == null) return;
+			size--;
+			for(int next = (slot + 1) & mask; fish[next] != null; next = (next + 1) & mask)
+			{
+				//A fish can fill the gap if the gap lies between its home slot and where it is, going round the table
+				int home = home(squares[next], mask);
+				if(((next - home) & mask) >= ((next - slot) & mask))
+				{
+					squares[slot] = squares[next];
+					fish[slot] = fish[next];
+					slot = next;
+				}
+			}
+			fish[slot] = null;
+		}
+
+		/**
+		 * Removes every fish, marking their squares empty in an occupancy layer.
+		 */
+		private void clear(ByteBuffer occupancy)
+		{
+			if(size == 0) return;
+			for(int slot = 0; slot < fish.length; slot++)
+			{
+				if(fish[slot] == null) continue;
+				occupancy.put(squares[slot], Species.NONE);
+				fish[slot] = null;
+			}
+			size = 0;
+		}
+
+		private void resize(int capacity)
+		{
+			int oldSquares[] = squares;
+			Fish oldFish[] = fish;
+			squares = new int[capacity];
+			fish = new Fish[capacity];
+			size = 0;
+			for(int slot = 0; slot < oldFish.length; slot++)
+			{
+				if(oldFish[slot] != null) put(oldSquares[slot], oldFish[slot]);
+			}
+		}
+
+		/**
+		 * @return The slot a square's fish is looked for from, mixed so that neighbouring squares spread over the table.
+		 */
+		private static int home(int square, int mask)
+		{
+			return (square * 0x9E3779B9 >>> 16 ^ square * 0x9E3779B9) & mask;
+		}
+	}
+
+	/**
+	 * Read only view of an ocean file written by a mapped OffHeapOcean, possibly from another process.
+	 */
+	public static class Snapshot
+	{
+		private int height;
+		private int width;
+		private FloatBuffer plankton;
+		private ByteBuffer rocks;
+		private ByteBuffer occupancy;
+
+		/**
+		 * Maps an ocean file read only.
+		 * @param file The ocean file.
+		 * @throws IOException If the file cannot be mapped or is not an ocean file.
+		 */
+		public Snapshot(File file) throws IOException
+		{
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try
+			{
+				FileChannel channel = raf.getChannel();
+				ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+				if(header.getInt() != MAGIC) throw new IOException(file + " is not an ocean file");
+				height = header.getInt();
+				width = header.getInt();
+				long squares = (long) height * width;
+				plankton = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, squares * 4).asFloatBuffer();
+				rocks = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + squares * 4, squares);
+				occupancy = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + squares * 5, squares);
+			}
+			finally
+			{
+				raf.close();
+			}
+		}
+
+		public int getHeight()
+		{
+			return height;
+		}
+
+		public int getWidth()
+		{
+			return width;
+		}
+
+		public float getPlanktonLevel(int row, int col)
+		{
+			return plankton.get(row * width + col);
+		}
+
+		public boolean hasRock(int row, int col)
+		{
+			return rocks.get(row * width + col) != 0;
+		}
+
+		public byte getSpeciesCodeAt(int row, int col)
+		{
+			return occupancy.get(row * width + col);
+		}
+
+		/**
+		 * @return The number of fish of each species, indexed by species code.
+		 */
+		public int[] countSpecies()
+		{
+			int counts[] = new int[Species.values().length + 1];
+			for(int i = 0; i < occupancy.capacity(); i++)
+			{
+				counts[occupancy.get(i)]++;
+			}
+			return counts;
+		}
+
+		/**
+		 * @return The mean plankton level over the whole ocean.
+		 */
+		public double meanPlankton()
+		{
+			double total = 0;
+			for(int i = 0; i < plankton.capacity(); i++)
+			{
+				total += plankton.get(i);
+			}
+			return total / plankton.capacity();
+		}
+	}
+}
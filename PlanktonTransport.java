@@ -0,0 +1,194 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves plankton between neighbouring ocean squares by diffusion and by the current.
+ * Each step every square exchanges plankton with the 4 squares beside it, above and below it, but never with rocks or across the edge of the ocean,
+ * so no plankton is made or lost. Diffusion moves a fraction of the difference between two squares,
+ * and the current carries a fraction of the plankton from the square upstream of each side, which keeps levels from ever going negative.
+ *
+ * The new levels are written to a second layer, so every square reads the old levels.
+ * The ocean is split into bands of rows which are worked on in parallel on the Workers threads.
+ * Rows well away from rocks and the edge of the ocean in a uniform current are worked on by a simple loop the JIT compiler can vectorise.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class PlanktonTransport
+{
+	public static final int BAND_ROWS = 32; //The number of rows worked on by one thread at a time
+
+	//The row and column offsets of the 4 sides of a square
+	private static final int SIDE_ROW[] = {-1, 0, 0, 1};
+	private static final int SIDE_COL[] = {0, -1, 1, 0};
+
+	private float diffusion; //The fraction of the difference in plankton that moves across each side each step
+	private float rowSpeed; //The uniform current in squares per step, positive down the ocean
+	private float colSpeed; //The uniform current in squares per step, positive across to the right
+	private float rowCurrent[]; //The current down the ocean at each square, or null for a uniform current
+	private float colCurrent[]; //The current across the ocean at each square, or null for a uniform current
+
+	private float in[]; //The levels being read during apply
+	private float out[]; //The levels being written during apply
+	private Bitboard rocks; //The rocks of the ocean during apply
+	private int height;
+	private int width;
+	private List<Bander> banders; //One per thread, each works on bands until there are none left
+	private AtomicInteger nextBand; //The next band for a bander to take
+
+	/**
+	 * Create a transport with a uniform current.
+	 * Plankton cannot move more than a whole square's worth in a step, so 4 * diffusion + |rowSpeed| + |colSpeed| must not be more than 1.
+	 * @param diffusion The fraction of the difference in plankton that moves across each side each step.
+	 * @param rowSpeed The current down the ocean, in squares per step.
+	 * @param colSpeed The current across the ocean to the right, in squares per step.
+	 */
+	public PlanktonTransport(float diffusion, float rowSpeed, float colSpeed)
+	{
+		if(diffusion < 0 || 4 * diffusion + Math.abs(rowSpeed) + Math.abs(colSpeed) > 1)
+			throw new IllegalArgumentException("Plankton transport of diffusion " + diffusion + " and current " + rowSpeed + "," + colSpeed + " is unstable");
+		this.diffusion = diffusion;
+		this.rowSpeed = rowSpeed;
+		this.colSpeed = colSpeed;
+		nextBand = new AtomicInteger();
+		banders = new ArrayList<Bander>();
+		for(int t = 0; t < Workers.getThreads(); t++)
+		{
+			banders.add(new Bander());
+		}
+	}
+
+	/**
+	 * Create a transport with a current that varies from square to square.
+	 * The current across each side is the mean of the currents of the squares either side of it.
+	 * 4 * diffusion + 2 * (the largest |rowCurrent| + the largest |colCurrent|) must not be more than 1.
+	 * @param diffusion The fraction of the difference in plankton that moves across each side each step.
+	 * @param rowCurrent The current down the ocean at each square, row by row, in squares per step.
+	 * @param colCurrent The current across the ocean to the right at each square, row by row, in squares per step.
+	 */
+	public PlanktonTransport(float diffusion, float rowCurrent[], float colCurrent[])
+	{
+		this(diffusion, 0, 0);
+		float fastestRow = 0;
+		float fastestCol = 0;
+		for(int i = 0; i < rowCurrent.length; i++)
+		{
+			fastestRow = Math.max(fastestRow, Math.abs(rowCurrent[i]));
+			fastestCol = Math.max(fastestCol, Math.abs(colCurrent[i]));
+		}
+		if(4 * diffusion + 2 * (fastestRow + fastestCol) > 1)
+			throw new IllegalArgumentException("Plankton transport of diffusion " + diffusion + " and current up to " + fastestRow + "," + fastestCol + " is unstable");
+		this.rowCurrent = rowCurrent;
+		this.colCurrent = colCurrent;
+	}
+
+	/**
+	 * Moves plankton for one step.
+	 * @param in The plankton level of each square, row by row, which is not changed.
+	 * @param out Set to the new plankton level of each square.
+	 * @param rocks The rocks of the ocean, plankton does not move in or out of a square with a rock.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 */
+	public void apply(float in[], float out[], Bitboard rocks, int height, int width)
+	{
+		if(rowCurrent != null && rowCurrent.length != in.length)
+			throw new IllegalArgumentException("Current of " + rowCurrent.length + " squares does not fit an ocean of " + in.length);
+		this.in = in;
+		this.out = out;
+		this.rocks = rocks;
+		this.height = height;
+		this.width = width;
+		nextBand.set(0);
+		Workers.runAll(banders);
+		this.in = null;
+		this.out = null;
+		this.rocks = null;
+	}
+
+	/**
+	 * @return True if a row can use the simple loop, because it is not at the edge of the ocean, the current is uniform,
+	 * and there are no rocks in it or in the rows either side.
+	 */
+	private boolean isOpenRow(int row)
+	{
+		return row > 0 && row < height - 1 && rowCurrent == null
+			&& rocks.isRowEmpty(row - 1) && rocks.isRowEmpty(row) && rocks.isRowEmpty(row + 1);
+	}
+
+	/**
+	 * Moves plankton for the squares of an open row that are not at the edge of the ocean.
+	 * In a uniform current the plankton carried across the two sides facing along the current is a fraction of the difference
+	 * between a square and the square upstream of it.
+	 */
+	private void transportOpenRow(int row)
+	{
+		int upCol = colSpeed > 0 ? -1 : 1;
+		int upRow = rowSpeed > 0 ? -width : width;
+		float carryCol = Math.abs(colSpeed);
+		float carryRow = Math.abs(rowSpeed);
+		int end = row * width + width - 1;
+		for(int i = row * width + 1; i < end; i++)
+		{
+			float p = in[i];
+			out[i] = p + diffusion * (in[i - 1] + in[i + 1] + in[i - width] + in[i + width] - 4 * p)
+				- carryCol * (p - in[i + upCol]) - carryRow * (p - in[i + upRow]);
+		}
+		out[row * width] = transportSquare(row, 0);
+		out[end] = transportSquare(row, width - 1);
+	}
+
+	/**
+	 * @return The new plankton level of any square.
+	 */
+	private float transportSquare(int row, int col)
+	{
+		int i = row * width + col;
+		float p = in[i];
+		if(rocks.get(row, col)) return p;
+		float change = 0;
+		for(int side = 0; side < 4; side++)
+		{
+			int sideRow = row + SIDE_ROW[side];
+			int sideCol = col + SIDE_COL[side];
+			if(sideRow < 0 || sideCol < 0 || sideRow >= height || sideCol >= width || rocks.get(sideRow, sideCol)) continue;
+			int n = sideRow * width + sideCol;
+			float q = in[n];
+			//The current flowing out across this side, negative if it flows in
+			float speed;
+			if(rowCurrent == null) speed = SIDE_ROW[side] * rowSpeed + SIDE_COL[side] * colSpeed;
+			else speed = (SIDE_ROW[side] * (rowCurrent[i] + rowCurrent[n]) + SIDE_COL[side] * (colCurrent[i] + colCurrent[n])) / 2;
+			change += diffusion * (q - p) - (speed > 0 ? speed * p : speed * q);
+		}
+		return p + change;
+	}
+
+	/**
+	 * Works on bands of rows one after another.
+	 */
+	private class Bander implements Callable<Void>
+	{
+		public Void call()
+		{
+			int bands = (height + BAND_ROWS - 1) / BAND_ROWS;
+			for(int band = nextBand.getAndIncrement(); band < bands; band = nextBand.getAndIncrement())
+			{
+				int last = Math.min(height, (band + 1) * BAND_ROWS);
+				for(int row = band * BAND_ROWS; row < last; row++)
+				{
+					if(isOpenRow(row)) transportOpenRow(row);
+					else
+					{
+						for(int col = 0; col < width; col++)
+						{
+							out[row * width + col] = transportSquare(row, col);
+						}
+					}
+				}
+			}
+			return null;
+		}
+	}
+}
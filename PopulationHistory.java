@@ -0,0 +1,296 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A history of a simulation kept as columns of numbers, one value of each column per step, such as the population of each species.
+ * The history is kept at several resolutions. Level 0 holds the latest steps one by one, and each level after holds the means
+ * of FACTOR entries of the level before, so a long run is kept in full at coarse resolution and in detail only for its latest steps.
+ * Each level is a ring of primitive arrays holding the latest capacity entries, and appending a step allocates nothing.
+ *
+ * Binary file layout, all big endian: int magic, int column count, int level count, int capacity, int factor,
+ * then the name of each column as a short length and UTF-8 bytes, then for each level an int entry count,
+ * the long step each entry starts at, and the entries of each column in turn as floats, oldest first.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class PopulationHistory
+{
+	public static final int MAGIC = 0x48495354; //"HIST", marks a history file
+	public static final int FACTOR = 16; //Each level's entries are the means of this many entries of the level before
+
+	private String columns[]; //The name of each column
+	private int capacity; //The entries kept at each level
+	private double values[][][]; //By level, column and slot, each level a ring of capacity slots
+	private long steps[][]; //The step each entry starts at, by level and slot
+	private long appended[]; //The entries appended to each level so far, the next goes in slot appended % capacity
+	private double pending[][]; //The sums of the entries of the level below not yet averaged into an entry of each level, by level and column
+	private int pendingCount[]; //The entries summed in pending, by level
+	private long pendingStep[]; //The step the first of the pending entries starts at, by level
+
+	/**
+	 * Create an empty history.
+	 * @param columns The name of each column.
+	 * @param capacity The entries kept at each level.
+	 * @param levels The number of levels, at least 1. The last covers up to capacity * FACTOR^(levels - 1) steps.
+	 */
+	public PopulationHistory(String columns[], int capacity, int levels)
+	{
+		this.columns = columns.clone();
+		this.capacity = capacity;
+		levels = Math.max(1, levels);
+		values = new double[levels][columns.length][capacity];
+		steps = new long[levels][capacity];
+		appended = new long[levels];
+		pending = new double[levels][columns.length];
+		pendingCount = new int[levels];
+		pendingStep = new long[levels];
+	}
+
+	/**
+	 * Appends a step to the history, averaging it into the coarser levels.
+	 * @param step The step.
+	 * @param row The value of each column in the step, which is copied.
+	 */
+	public void append(long step, double row[])
+	{
+		add(0, step, row);
+	}
+
+	/**
+	 * Adds an entry to a level, and to the sums for the level above, adding their mean to that level once there are FACTOR of them.
+	 */
+	private void add(int level, long step, double row[])
+	{
+		int slot = (int) (appended[level] % capacity);
+		for(int c = 0; c < columns.length; c++)
+		{
+			values[level][c][slot] = row[c];
+		}
+		steps[level][slot] = step;
+		appended[level]++;
+
+		int above = level + 1;
+		if(above == values.length) return;
+		if(pendingCount[above] == 0) pendingStep[above] = step;
+		double sums[] = pending[above];
+		for(int c = 0; c < columns.length; c++)
+		{
+			sums[c] += row[c];
+		}
+		if(++pendingCount[above] < FACTOR) return;
+		for(int c = 0; c < columns.length; c++)
+		{
+			sums[c] /= FACTOR;
+		}
+		add(above, pendingStep[above], sums);
+		for(int c = 0; c < columns.length; c++)
+		{
+			sums[c] = 0;
+		}
+		pendingCount[above] = 0;
+	}
+
+	/**
+	 * @return The number of levels.
+	 */
+	public int getLevels()
+	{
+		return values.length;
+	}
+
+	/**
+	 * @return The name of each column.
+	 */
+	public String[] getColumns()
+	{
+		return columns.clone();
+	}
+
+	/**
+	 * @return The index of the column with the given name, or -1 if there is none.
+	 */
+	public int getColumn(String name)
+	{
+		for(int c = 0; c < columns.length; c++)
+		{
+			if(columns[c].equals(name)) return c;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The number of entries kept at a level, at most the capacity.
+	 */
+	public int getSize(int level)
+	{
+		return (int) Math.min(appended[level], capacity);
+	}
+
+	/**
+	 * @param level The level.
+	 * @param entry The entry, from 0 for the oldest kept to getSize(level) - 1 for the latest.
+	 * @return The step the entry starts at.
+	 */
+	public long getStep(int level, int entry)
+	{
+		return steps[level][slot(level, entry)];
+	}
+
+	/**
+	 * @param level The level.
+	 * @param column The column.
+	 * @param entry The entry, from 0 for the oldest kept to getSize(level) - 1 for the latest.
+	 * @return The value of the column in the entry, at levels above 0 the mean over the steps the entry covers.
+	 */
+	public double get(int level, int column, int entry)
+	{
+		return values[level][column][slot(level, entry)];
+	}
+
+	/**
+	 * @return The slot of an entry of a level, counting from the oldest kept.
+	 */
+	private int slot(int level, int entry)
+	{
+		return (int) ((appended[level] - getSize(level) + entry) % capacity);
+	}
+
+	/**
+	 * Writes a level of the history as CSV, a header row and then a row for each entry, oldest first.
+	 * @param file The file, which is created or overwritten.
+	 * @param level The level.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void writeCsv(Path file, int level) throws IOException
+	{
+		BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+		try
+		{
+			writer.write("step");
+			for(String column : columns)
+			{
+				writer.write(',');
+				writer.write(column);
+			}
+			writer.newLine();
+			for(int e = 0; e < getSize(level); e++)
+			{
+				writer.write(Long.toString(getStep(level, e)));
+				for(int c = 0; c < columns.length; c++)
+				{
+					double value = get(level, c, e);
+					writer.write(',');
+					writer.write(value == (long) value ? Long.toString((long) value) : Double.toString(value));
+				}
+				writer.newLine();
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	/**
+	 * Writes every level of the history in the binary layout, values rounded to floats.
+	 * @param file The file, which is created or overwritten.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void writeBinary(Path file) throws IOException
+	{
+		byte names[][] = new byte[columns.length][];
+		int size = 20;
+		for(int c = 0; c < columns.length; c++)
+		{
+			names[c] = columns[c].getBytes(StandardCharsets.UTF_8);
+			size += 2 + names[c].length;
+		}
+		for(int level = 0; level < values.length; level++)
+		{
+			size += 4 + getSize(level) * (8 + 4 * columns.length);
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(MAGIC).putInt(columns.length).putInt(values.length).putInt(capacity).putInt(FACTOR);
+		for(byte name[] : names)
+		{
+			buffer.putShort((short) name.length).put(name);
+		}
+		for(int level = 0; level < values.length; level++)
+		{
+			int entries = getSize(level);
+			buffer.putInt(entries);
+			for(int e = 0; e < entries; e++)
+			{
+				buffer.putLong(getStep(level, e));
+			}
+			for(int c = 0; c < columns.length; c++)
+			{
+				for(int e = 0; e < entries; e++)
+				{
+					buffer.putFloat((float) get(level, c, e));
+				}
+			}
+		}
+		buffer.flip();
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+		try
+		{
+			while(buffer.hasRemaining())
+			{
+				channel.write(buffer);
+			}
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads a history written by writeBinary. Steps appended to it after reading are averaged afresh, from the next entry on.
+	 * @param file The file.
+	 * @return The history.
+	 * @throws IOException If the file cannot be read or is not a history.
+	 */
+	public static PopulationHistory readBinary(Path file) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+		if(buffer.remaining() < 20 || buffer.getInt() != MAGIC) throw new IOException("Not a population history: " + file);
+		String columns[] = new String[buffer.getInt()];
+		int levels = buffer.getInt();
+		int capacity = buffer.getInt();
+		if(buffer.getInt() != FACTOR) throw new IOException("Population history averaged by a different factor: " + file);
+		for(int c = 0; c < columns.length; c++)
+		{
+			byte name[] = new byte[buffer.getShort()];
+			buffer.get(name);
+			columns[c] = new String(name, StandardCharsets.UTF_8);
+		}
+		PopulationHistory history = new PopulationHistory(columns, capacity, levels);
+		for(int level = 0; level < levels; level++)
+		{
+			int entries = buffer.getInt();
+			for(int e = 0; e < entries; e++)
+			{
+				history.steps[level][e] = buffer.getLong();
+			}
+			for(int c = 0; c < columns.length; c++)
+			{
+				for(int e = 0; e < entries; e++)
+				{
+					history.values[level][c][e] = buffer.getFloat();
+				}
+			}
+			history.appended[level] = entries;
+		}
+		return history;
+	}
+}
@@ -0,0 +1,31 @@
+import java.util.Random;
+
+/**
+ * Provide control over the randomization of the simulation.
+ * All random numbers used by the simulation come from the one shared Random object,
+ * so setting a seed makes a run repeatable.
+ *
+ * @author David J. Barnes, Michael Kolling and Matthew Maglennon
+ */
+public class Randomizer
+{
+    // The shared random object, unseeded until setSeed is called.
+    private static final Random rand = new Random();
+
+    /**
+     * @return The shared Random object.
+     */
+    public static Random getRandom()
+    {
+        return rand;
+    }
+
+    /**
+     * Seed the shared Random object so the simulation can be repeated.
+     * @param seed The seed to use.
+     */
+    public static void setSeed(long seed)
+    {
+        rand.setSeed(seed);
+    }
+}
@@ -0,0 +1,151 @@
+import java.util.Arrays;
+
+/**
+ * A field over the ocean that is strongest where sharks are crowded together.
+ * Each shark adds radius + 1 to its own square, falling by 1 for each step away, to nothing beyond the radius.
+ * The field is updated as sharks arrive and leave, so a shark can avoid others by reading the values of the squares around it.
+ *
+ * The field is kept in square chunks, as SparseOcean keeps its squares, and a chunk is only allocated while a shark's repulsion reaches it.
+ * Its memory therefore follows the sharks rather than the size of the ocean. Chunks no shark reaches any more are kept to be reused,
+ * so sharks moving about allocate nothing once the field has as many chunks as they need.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class RepulsionField
+{
+	public static final int CHUNK_SHIFT = 4; //Chunks are 16 by 16 squares
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private int height; //Height of the ocean
+	private int width; //Width of the ocean
+	private int radius; //How far each shark's repulsion reaches
+	private int chunkCols; //The number of chunks across the ocean
+	private int chunks[][]; //The strength of the field at each square of each chunk, row by row, null where no shark reaches
+	private int reaching[]; //The number of sharks whose repulsion reaches each chunk
+	private int spare[][] = new int[0][]; //Chunks no shark reaches any more, all 0, kept to be reused
+	private int spareCount; //The number of spare chunks
+
+	/**
+	 * Create an empty field.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 * @param radius How far from a shark its repulsion reaches, counting diagonal steps as 1.
+	 */
+	public RepulsionField(int height, int width, int radius)
+	{
+		this.height = height;
+		this.width = width;
+		this.radius = radius;
+		chunkCols = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+		chunks = new int[((height + CHUNK_MASK) >> CHUNK_SHIFT) * chunkCols][];
+		reaching = new int[chunks.length];
+	}
+
+	/**
+	 * Adds the repulsion of a shark arriving at a square.
+	 */
+	public void sharkArrives(int row, int col)
+	{
+		spread(row, col, 1);
+	}
+
+	/**
+	 * Removes the repulsion of a shark leaving a square.
+	 */
+	public void sharkLeaves(int row, int col)
+	{
+		spread(row, col, -1);
+	}
+
+	/**
+	 * @return The strength of the field at a square.
+	 */
+	public int get(int row, int col)
+	{
+		int chunk[] = chunks[(row >> CHUNK_SHIFT) * chunkCols + (col >> CHUNK_SHIFT)];
+		if(chunk == null) return 0;
+		return chunk[((row & CHUNK_MASK) << CHUNK_SHIFT) + (col & CHUNK_MASK)];
+	}
+
+	/**
+	 * Removes every shark from the field.
+	 */
+	public void clear()
+	{
+		for(int c = 0; c < chunks.length; c++)
+		{
+			if(chunks[c] == null) continue;
+			Arrays.fill(chunks[c], 0);
+			release(c);
+		}
+	}
+
+	/**
+	 * @return How far each shark's repulsion reaches.
+	 */
+	public int getRadius()
+	{
+		return radius;
+	}
+
+	/**
+	 * @return The number of chunks allocated, whether in use or spare.
+	 */
+	public int getAllocatedChunks()
+	{
+		int used = 0;
+		for(int chunk[] : chunks)
+		{
+			if(chunk != null) used++;
+		}
+		return used + spareCount;
+	}
+
+	/**
+	 * Adds or removes one shark's repulsion around a square, chunk by chunk.
+	 * @param sign 1 to add, -1 to remove.
+	 */
+	private void spread(int row, int col, int sign)
+	{
+		int firstRow = Math.max(0, row - radius);
+		int lastRow = Math.min(height - 1, row + radius);
+		int firstCol = Math.max(0, col - radius);
+		int lastCol = Math.min(width - 1, col + radius);
+		for(int chunkRow = firstRow >> CHUNK_SHIFT; chunkRow <= lastRow >> CHUNK_SHIFT; chunkRow++)
+		{
+			for(int chunkCol = firstCol >> CHUNK_SHIFT; chunkCol <= lastCol >> CHUNK_SHIFT; chunkCol++)
+			{
+				int c = chunkRow * chunkCols + chunkCol;
+				if(chunks[c] == null) chunks[c] = spareCount > 0 ? spare[--spareCount] : new int[CHUNK_SIZE * CHUNK_SIZE];
+				int chunk[] = chunks[c];
+				int top = chunkRow << CHUNK_SHIFT;
+				int left = chunkCol << CHUNK_SHIFT;
+				for(int r = Math.max(firstRow, top); r <= Math.min(lastRow, top + CHUNK_MASK); r++)
+				{
+					int rowDistance = Math.abs(r - row);
+					int i = (r - top) << CHUNK_SHIFT;
+					for(int cc = Math.max(firstCol, left); cc <= Math.min(lastCol, left + CHUNK_MASK); cc++)
+					{
+						chunk[i + cc - left] += sign * (radius + 1 - Math.max(rowDistance, Math.abs(cc - col)));
+					}
+				}
+				//once no shark reaches the chunk every square is back to 0
+				reaching[c] += sign;
+				if(reaching[c] == 0) release(c);
+			}
+		}
+	}
+
+	/**
+	 * Puts a chunk whose squares are all 0 aside to be reused.
+	 */
+	private void release(int c)
+	{
+		if(spareCount == spare.length) spare = Arrays.copyOf(spare, Math.max(4, spare.length * 2));
+		spare[spareCount++] = chunks[c];
+		chunks[c] = null;
+		reaching[c] = 0;
+	}
+}
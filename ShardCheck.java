@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks that a sharded simulation comes out the same as the single process simulation, failing with a non-zero exit status if it does not.
+ * Simulator is run with bandedSteps set and compared with ShardedSimulator runs on each number of shards over each transport,
+ * adding up the populations and checksums the shards report, see ShardWorker.getSummary.
+ *
+ * Arguments are name=value pairs, each optional:
+ *   size=200x200          the size of the ocean
+ *   steps=100             steps simulated
+ *   seed=42
+ *   shards=1,2,4          the numbers of shards to compare with Simulator
+ *   transports=socket,file
+ *   spill=false,true      whether young spill two squares away, see Fish.spillBirths, each checked in turn
+ *
+ * @author Matthew Maglennon
+ */
+
+public class ShardCheck
+{
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		String size = "200x200";
+		int steps = 100;
+		long seed = 42;
+		String shards = "1,2,4";
+		String transports = "socket,file";
+		String spill = "false,true";
+		for(String arg : args)
+		{
+			int equals = arg.indexOf('=');
+			if(equals < 0) throw new IllegalArgumentException("Expected name=value, got " + arg);
+			String name = arg.substring(0, equals);
+			String value = arg.substring(equals + 1);
+			if(name.equals("size")) size = value;
+			else if(name.equals("steps")) steps = Integer.parseInt(value);
+			else if(name.equals("seed")) seed = Long.parseLong(value);
+			else if(name.equals("shards")) shards = value;
+			else if(name.equals("transports")) transports = value;
+			else if(name.equals("spill")) spill = value;
+			else throw new IllegalArgumentException("Unknown argument " + name);
+		}
+
+		int x = size.indexOf('x');
+		int height = Integer.parseInt(size.substring(0, x));
+		int width = Integer.parseInt(size.substring(x + 1));
+		int failures = 0;
+		for(String spilling : spill.split(","))
+		{
+			Fish.spillBirths = Boolean.parseBoolean(spilling);
+			String scenario = String.format("%s, %d steps%s", size, steps, Fish.spillBirths ? " with young spilling" : "");
+			long expected[] = simulate(height, width, steps, seed);
+			System.out.println(String.format("%s in Simulator: %s", scenario, describe(expected)));
+			for(String transport : transports.split(","))
+			{
+				for(String count : shards.split(","))
+				{
+					long totals[] = totals(new ShardedSimulator(height, width, Integer.parseInt(count), seed, transport).run(steps));
+					boolean same = Arrays.equals(expected, totals);
+					System.out.println(String.format("%s on %s shards over %s: %s%s", scenario, count, transport, describe(totals), same ? "" : " DIFFERENT"));
+					if(!same) failures++;
+				}
+			}
+		}
+		if(failures > 0) System.exit(1);
+	}
+
+	/**
+	 * Runs Simulator headless with banded steps.
+	 * @return The number of sharks, herring and groper and the checksum, as a sharded run reports them.
+	 */
+	private static long[] simulate(int height, int width, int steps, long seed)
+	{
+		Randomizer.setSeed(seed);
+		Simulator.enableMetrics = false;
+		Simulator.bandedSteps = true;
+		Simulator sim = new Simulator(height, width, OceanType.DENSE, true);
+		sim.setUp();
+		for(int s = 0; s < steps; s++)
+		{
+			sim.step();
+		}
+		Ocean ocean = sim.getCurrentOcean();
+		long totals[] = new long[4];
+		for(int row = 0; row < height; row++)
+		{
+			for(int col = 0; col < width; col++)
+			{
+				Fish fish = ocean.getFishAt(new Location(row, col));
+				if(fish == null || !fish.isAlive()) continue;
+				totals[fish.getSpecies().ordinal()]++;
+				totals[3] += ShardWorker.checksum(fish, row, col, width);
+			}
+		}
+		return totals;
+	}
+
+	/**
+	 * Adds up the summaries reported by the shards of a run, see ShardWorker.getSummary.
+	 * @return The number of sharks, herring and groper and the checksum.
+	 */
+	private static long[] totals(List<String> summaries)
+	{
+		long totals[] = new long[4];
+		for(String summary : summaries)
+		{
+			String words[] = summary.split(" ");
+			for(int w = 0; w < words.length - 1; w++)
+			{
+				if(words[w].equals("Shark")) totals[0] += Long.parseLong(words[w + 1]);
+				else if(words[w].equals("Herring")) totals[1] += Long.parseLong(words[w + 1]);
+				else if(words[w].equals("Groper")) totals[2] += Long.parseLong(words[w + 1]);
+				else if(words[w].equals("checksum")) totals[3] += Long.parseLong(words[w + 1]);
+			}
+		}
+		return totals;
+	}
+
+	private static String describe(long totals[])
+	{
+		return "Shark " + totals[0] + " Herring " + totals[1] + " Groper " + totals[2] + " checksum " + totals[3];
+	}
+}
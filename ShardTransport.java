@@ -0,0 +1,15 @@
+import java.io.IOException;
+
+/**
+ * Interface for the transports shard workers use to exchange the rows around their boundaries.
+ * Messages between any two shards must be delivered in the order they were sent.
+ * @author Matthew Maglennon
+ *
+ */
+
+public interface ShardTransport
+{
+	public void send(int toShard, byte[] message) throws IOException;
+	public byte[] receive(int fromShard) throws IOException;
+	public void close() throws IOException;
+}
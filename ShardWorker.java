@@ -0,0 +1,357 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Steps one shard of a sharded simulation, normally in its own process started by ShardedSimulator.
+ * The ocean is split into the bands of a BandedStep and each shard owns a run of whole bands.
+ * A shard's oceans hold its bands plus a halo of rows on each side, copies of the rows its neighbours own.
+ *
+ * The result does not depend on the number of shards, and is the same as Simulator's with bandedSteps set for the same seed.
+ * Each step the bands act in the order of a BandedStep, the even bands and then the odd, which any number of shards can keep to.
+ * Fish reach at most halo rows into the next band, and a band is at least twice that, so the bands acting at once cannot affect each other.
+ * After the even bands have acted the shard owning the even band at each shard boundary sends the rows within a halo of the boundary,
+ * from both oceans, to the shard on the other side, which makes its copies of them match before its odd band acts, and the same again after the odd bands.
+ * A fish that ends up in rows another shard owns is carried on by that shard from then on, and the copy left behind is dropped by the LifeCycle.
+ * Only plain oceans are used, so sharks sense no further than the squares around them and the sharks they avoid, and plankton,
+ * which fish only eat from their own square, stays with the shard owning its row.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class ShardWorker
+{
+	private int shard; //The index of this shard
+	private int shardCount; //The number of shards
+	private int height; //The height of the whole ocean
+	private int width; //The width of the ocean
+	private long seederSeed; //The seed of the OceanSeeder, drawn from the simulation's seed as Simulator draws it
+	private BandedStep bands; //The order the bands act in and the random object they draw from
+	private int firstBand; //The first band owned by this shard
+	private int endBand; //The band after the last one owned by this shard
+	private int firstRow; //The first world row owned by this shard
+	private int endRow; //The world row after the last one owned by this shard
+	private int halo; //The number of rows either side of a shard boundary a fish can reach across or be affected from in a step
+	private int topHalo; //The number of halo rows above the bands, 0 at the top of the world
+	private int bottomHalo; //The number of halo rows below the bands, 0 at the bottom of the world
+	private int rowOffset; //The world row of local row 0
+	private ShardTransport transport;
+
+	private Ocean currentOcean;
+	private Ocean updatedOcean;
+	private List<Actor> newActors = new ArrayList<Actor>();
+	private LifeCycle lifeCycle = new LifeCycle(); //Kills the shard's fish of old age and starvation and lets them breed once old enough
+	private long step; //The number of steps run
+
+	/**
+	 * Runs a shard worker.
+	 * Arguments: shard shardCount height width steps seed transport [spillBirths], where transport is socket:port,port... or file:directory
+	 * and spillBirths is true or false, see Fish.spillBirths.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		int shard = Integer.parseInt(args[0]);
+		int shardCount = Integer.parseInt(args[1]);
+		int height = Integer.parseInt(args[2]);
+		int width = Integer.parseInt(args[3]);
+		int steps = Integer.parseInt(args[4]);
+		long seed = Long.parseLong(args[5]);
+		ShardTransport transport = createTransport(args[6], shard, shardCount);
+		if(args.length > 7) Fish.spillBirths = Boolean.parseBoolean(args[7]);
+
+		ShardWorker worker = new ShardWorker(shard, shardCount, height, width, seed, transport);
+		long start = System.currentTimeMillis();
+		worker.populate();
+		worker.run(steps);
+		transport.close();
+		System.out.println(worker.getSummary(System.currentTimeMillis() - start));
+	}
+
+	/**
+	 * Creates the transport named by a transport argument.
+	 * @param spec Either socket: followed by the port each shard but the last listens on, separated by commas, or file:directory.
+	 */
+	static ShardTransport createTransport(String spec, int shard, int shardCount) throws IOException
+	{
+		if(spec.startsWith("socket:"))
+		{
+			String ports[] = spec.length() > 7 ? spec.substring(7).split(",") : new String[0]; //a single shard listens on nothing
+			int listening[] = new int[ports.length];
+			for(int p = 0; p < ports.length; p++)
+			{
+				listening[p] = Integer.parseInt(ports[p]);
+			}
+			return new SocketShardTransport(shard, shardCount, listening);
+		}
+		else if(spec.startsWith("file:"))
+			return new FileShardTransport(new File(spec.substring(5)), shard);
+		else
+			throw new IllegalArgumentException("Unknown transport " + spec);
+	}
+
+	/**
+	 * Creates a worker for one run of bands of an ocean.
+	 * @param shard The index of this shard.
+	 * @param shardCount The number of shards.
+	 * @param height The height of the whole ocean.
+	 * @param width The width of the ocean.
+	 * @param seed The seed of the simulation.
+	 * @param transport The transport connecting this shard to its neighbours.
+	 */
+	public ShardWorker(int shard, int shardCount, int height, int width, long seed, ShardTransport transport)
+	{
+		this.shard = shard;
+		this.shardCount = shardCount;
+		this.height = height;
+		this.width = width;
+		this.transport = transport;
+		halo = haloRows();
+		if(2 * halo > BandedStep.BAND_ROWS)
+			throw new IllegalArgumentException("Fish reach " + halo + " rows in a step, too far for bands of " + BandedStep.BAND_ROWS + " rows");
+
+		//Simulator draws the seeder's seed and then the bands' seed from the shared random object once it is seeded
+		Random seeds = new Random(seed);
+		seederSeed = seeds.nextLong();
+		bands = new BandedStep(height, seeds.nextLong());
+		int bandCount = bands.getBandCount();
+		firstBand = (int) ((long) bandCount * shard / shardCount);
+		endBand = (int) ((long) bandCount * (shard + 1) / shardCount);
+		if(endBand == firstBand)
+			throw new IllegalArgumentException("Shard " + shard + " would own no band of rows, an ocean " + height + " high has only " + bandCount);
+		firstRow = bands.bandStart(firstBand);
+		endRow = bands.bandStart(endBand);
+
+		topHalo = (shard > 0) ? halo : 0;
+		bottomHalo = (shard < shardCount - 1) ? halo : 0;
+		rowOffset = firstRow - topHalo;
+		int localHeight = endRow - firstRow + topHalo + bottomHalo;
+		currentOcean = new Ocean(localHeight, width);
+		updatedOcean = new Ocean(localHeight, width);
+		currentOcean.setRandom(bands.getRandom());
+		updatedOcean.setRandom(bands.getRandom());
+		if(Shark.enableSharkAvoidance)
+		{
+			currentOcean.setSharkRepulsion(new RepulsionField(localHeight, width, Shark.avoidanceRadius));
+			updatedOcean.setSharkRepulsion(new RepulsionField(localHeight, width, Shark.avoidanceRadius));
+		}
+	}
+
+	/**
+	 * @return The number of rows a fish can reach into, or be affected from, beyond its own in a step:
+	 * the squares around it, two rows for young spilling further, and the sharks a shark avoids around the squares it could move to.
+	 */
+	static int haloRows()
+	{
+		int rows = Fish.spillBirths ? 2 : 1;
+		if(Shark.enableSharkAvoidance) rows = Math.max(rows, 1 + Shark.avoidanceRadius);
+		return rows;
+	}
+
+	/**
+	 * Populates the bands and halo rows exactly as Simulator populates these rows of the whole ocean for the same seed, when there are no rocks.
+	 * The seeder generates only the seeder bands that overlap this shard. Only fish in rows this shard owns are followed by its LifeCycle.
+	 */
+	public void populate()
+	{
+		OceanSeeder seeder = new OceanSeeder(seederSeed, height, width);
+		for(Fish fish : seeder.generate(rowOffset, rowOffset + currentOcean.getHeight(), null))
+		{
+			Location location = fish.getLocation();
+			fish.setLocation(new Location(location.getRow() - rowOffset, location.getCol()));
+			currentOcean.addFish(fish);
+			if(owns(fish.getLocation().getRow())) lifeCycle.add(fish);
+		}
+	}
+
+	/**
+	 * Runs the given number of steps, exchanging the rows around each shard boundary with the neighbouring shards after each half of a step.
+	 * @param steps The number of steps to run.
+	 */
+	public void run(int steps) throws IOException
+	{
+		for(int s = 0; s < steps; s++)
+		{
+			step++;
+			lifeCycle.advance(currentOcean);
+			updateHaloLifeCycles();
+			for(int parity = 0; parity < 2; parity++)
+			{
+				for(int band = firstBand; band < endBand; band++)
+				{
+					if((band & 1) == parity) actBand(band);
+				}
+				exchange(parity);
+			}
+			updatedOcean.regeneratePlankton();
+
+			Ocean temp = currentOcean;
+			currentOcean = updatedOcean;
+			updatedOcean = temp;
+			updatedOcean.clearFish();
+		}
+	}
+
+	/**
+	 * Kills the fish in the halo rows that reach the end of their life in this step, as the LifeCycle of the shard owning them does,
+	 * so that they are neither seen nor eaten here.
+	 */
+	private void updateHaloLifeCycles()
+	{
+		for(int row = 0; row < currentOcean.getHeight(); row++)
+		{
+			if(owns(row)) continue;
+			for(int col = 0; col < width; col++)
+			{
+				Fish fish = currentOcean.fishAt(row, col);
+				if(fish != null && fish.isAlive() && fish.updateLifeCycle()) currentOcean.fishLeaves(fish.getLocation());
+			}
+		}
+	}
+
+	/**
+	 * Acts every living fish of a band that has not yet acted, row by row, and starts following the young born in rows this shard owns.
+	 */
+	private void actBand(int band)
+	{
+		newActors.clear();
+		bands.actBand(band, currentOcean, updatedOcean, rowOffset, newActors, step);
+		for(Actor actor : newActors)
+		{
+			Fish baby = (Fish) actor;
+			if(owns(baby.getLocation().getRow())) lifeCycle.add(baby);
+		}
+	}
+
+	/**
+	 * At each shard boundary, sends the rows around it to the neighbour if this shard's band there has just acted,
+	 * otherwise waits for the neighbour's rows and applies them. Every message is sent before any is waited for.
+	 * @param parity 0 after the even bands have acted, 1 after the odd.
+	 */
+	private void exchange(int parity) throws IOException
+	{
+		boolean sendUp = topHalo > 0 && (firstBand & 1) == parity;
+		boolean sendDown = bottomHalo > 0 && ((endBand - 1) & 1) == parity;
+		int bottomRegion = currentOcean.getHeight() - 2 * halo;
+		if(sendUp)
+			transport.send(shard - 1, encodeRegion(0));
+		if(sendDown)
+			transport.send(shard + 1, encodeRegion(bottomRegion));
+		if(topHalo > 0 && !sendUp)
+			applyRegion(0, transport.receive(shard - 1));
+		if(bottomHalo > 0 && !sendDown)
+			applyRegion(bottomRegion, transport.receive(shard + 1));
+	}
+
+	/**
+	 * Encodes the fish within a halo of a boundary, the rows of the current ocean then the rows of the updated ocean.
+	 * Each square is its species code, followed for a fish by its state, see Fish.writeState.
+	 * @param fromRow The first local row of the region.
+	 */
+	private byte[] encodeRegion(int fromRow) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		for(Ocean ocean : new Ocean[] {currentOcean, updatedOcean})
+		{
+			for(int row = fromRow; row < fromRow + 2 * halo; row++)
+			{
+				for(int col = 0; col < width; col++)
+				{
+					Fish fish = ocean.fishAt(row, col);
+					out.writeByte(Species.codeOf(fish));
+					if(fish != null) fish.writeState(out, rowOffset);
+				}
+			}
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Makes the region around a boundary match a neighbour's, see encodeRegion.
+	 * In the current ocean squares only lose fish during a step and in the updated ocean they only gain them, so a fish of the same species
+	 * already in a square is the same fish and only its state is updated. Otherwise a new copy is placed,
+	 * and followed by the LifeCycle if it is alive and has moved or been born into a row this shard owns.
+	 * @param fromRow The first local row of the region.
+	 */
+	private void applyRegion(int fromRow, byte message[]) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+		for(Ocean ocean : new Ocean[] {currentOcean, updatedOcean})
+		{
+			for(int row = fromRow; row < fromRow + 2 * halo; row++)
+			{
+				for(int col = 0; col < width; col++)
+				{
+					byte species = in.readByte();
+					Fish fish = ocean.fishAt(row, col);
+					if(species == Species.NONE)
+					{
+						if(fish != null) ocean.fishLeaves(fish.getLocation());
+					}
+					else if(fish != null && Species.codeOf(fish) == species)
+					{
+						fish.readState(in, rowOffset);
+					}
+					else
+					{
+						fish = Species.fromCode(species).createFish();
+						fish.readState(in, rowOffset);
+						fish.setLocation(new Location(row, col));
+						ocean.addFish(fish);
+						if(fish.isAlive() && owns(row)) lifeCycle.add(fish);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The part of a summary's checksum for one fish, see getSummary.
+	 * @param row The fish's row in the whole ocean.
+	 */
+	static long checksum(Fish fish, int row, int col, int width)
+	{
+		long cell = (long) row * width + col;
+		return (cell * 31 + Species.codeOf(fish)) * 31 * 31 + fish.age * 31 + fish.hunger;
+	}
+
+	/**
+	 * @return True if a local row is one of this shard's own rather than a halo row.
+	 */
+	private boolean owns(int localRow)
+	{
+		return localRow >= topHalo && localRow < currentOcean.getHeight() - bottomHalo;
+	}
+
+	/**
+	 * @return A line of the form "shard n rows a-b: species counts checksum c time t".
+	 * The checksum covers every living fish's species, world location, age and hunger, so runs can be compared.
+	 */
+	public String getSummary(long millis)
+	{
+		int counts[] = new int[4];
+		long checksum = 0;
+		for(int row = topHalo; row < currentOcean.getHeight() - bottomHalo; row++)
+		{
+			for(int col = 0; col < width; col++)
+			{
+				Fish fish = currentOcean.fishAt(row, col);
+				if(fish != null && fish.isAlive())
+				{
+					byte species = Species.codeOf(fish);
+					counts[species]++;
+					checksum += checksum(fish, row + rowOffset, col, width);
+				}
+			}
+		}
+		return "shard " + shard + " rows " + firstRow + "-" + (endRow - 1) + ": Shark " + counts[Species.SHARK.getCode()] + " Herring " + counts[Species.HERRING.getCode()]
+				+ " Groper " + counts[Species.GROPER.getCode()] + " checksum " + checksum + " time " + millis;
+	}
+}
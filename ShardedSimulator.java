@@ -0,0 +1,203 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a simulation split across several worker processes, each stepping a run of bands of rows of the ocean.
+ * See ShardWorker for how the shards exchange the rows around their boundaries.
+ * The workers run headless for a fixed number of steps and report their populations when they finish.
+ *
+ * A run is repeatable for a given seed, and comes out the same whatever the number of shards: it is the single process run of Simulator
+ * with bandedSteps set, for the same seed and an ocean without rocks, see ShardCheck. Fish sense no further than the squares around them,
+ * as they do by default. The workers take whether young spill two squares away, Fish.spillBirths, from the process starting them.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class ShardedSimulator
+{
+	/**
+	 * Runs a sharded simulation.
+	 * Arguments: height width steps shards seed [socket|file]
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		int height = Integer.parseInt(args[0]);
+		int width = Integer.parseInt(args[1]);
+		int steps = Integer.parseInt(args[2]);
+		int shards = Integer.parseInt(args[3]);
+		long seed = Long.parseLong(args[4]);
+		String transport = (args.length > 5) ? args[5] : "socket";
+
+		ShardedSimulator sim = new ShardedSimulator(height, width, shards, seed, transport);
+		long start = System.currentTimeMillis();
+		List<String> summaries = sim.run(steps);
+		long millis = System.currentTimeMillis() - start;
+		for(String summary : summaries)
+		{
+			System.out.println(summary);
+		}
+		System.out.println(shards + " shards, " + steps + " steps in " + millis + "ms, " + (steps * 1000L / Math.max(millis, 1)) + " steps/s");
+	}
+
+	private int height;
+	private int width;
+	private int shards;
+	private long seed;
+	private String transport; //socket or file
+
+	/**
+	 * @param height The height of the ocean.
+	 * @param width The width of the ocean.
+	 * @param shards The number of worker processes to split the ocean between.
+	 * @param seed The seed of the simulation.
+	 * @param transport Either "socket" for loopback sockets or "file" for a shared directory.
+	 */
+	public ShardedSimulator(int height, int width, int shards, long seed, String transport)
+	{
+		this.height = height;
+		this.width = width;
+		this.shards = shards;
+		this.seed = seed;
+		this.transport = transport;
+	}
+
+	/**
+	 * Starts a worker process per shard and waits for them all to finish.
+	 * @param steps The number of steps to run.
+	 * @return The summary line reported by each shard, in shard order.
+	 * @throws IOException If a worker cannot be started or fails.
+	 */
+	public List<String> run(int steps) throws IOException, InterruptedException
+	{
+		String spec;
+		File directory = null;
+		if(transport.equals("file"))
+		{
+			directory = Files.createTempDirectory("fishsim-shards").toFile();
+			spec = "file:" + directory.getPath();
+		}
+		else
+		{
+			spec = "socket:" + freePorts(shards - 1);
+		}
+
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		List<Process> workers = new ArrayList<Process>();
+		List<OutputReader> outputs = new ArrayList<OutputReader>();
+		List<String> summaries = new ArrayList<String>();
+		try
+		{
+			for(int shard = 0; shard < shards; shard++)
+			{
+				ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "ShardWorker",
+						"" + shard, "" + shards, "" + height, "" + width, "" + steps, "" + seed, spec, "" + Fish.spillBirths);
+				builder.redirectErrorStream(true);
+				Process worker = builder.start();
+				workers.add(worker);
+				OutputReader output = new OutputReader(worker);
+				outputs.add(output);
+				output.start();
+			}
+
+			for(int shard = 0; shard < shards; shard++)
+			{
+				int status = workers.get(shard).waitFor();
+				outputs.get(shard).join();
+				if(status != 0) throw new IOException("Shard " + shard + " failed: " + outputs.get(shard).last);
+				summaries.add(outputs.get(shard).last);
+			}
+		}
+		finally
+		{
+			//Does nothing to workers that have finished, and stops the rest if one failed
+			for(Process worker : workers) worker.destroy();
+			if(directory != null) delete(directory);
+		}
+		return summaries;
+	}
+
+	/**
+	 * Finds ports on the loopback interface that nothing is listening on, by letting the system choose them.
+	 * A port could be taken again before a worker listens on it, but the system hands out ports in turn so that is unlikely.
+	 * @param count The number of ports to find.
+	 * @return The ports separated by commas.
+	 */
+	private static String freePorts(int count) throws IOException
+	{
+		List<ServerSocket> sockets = new ArrayList<ServerSocket>();
+		try
+		{
+			StringBuilder ports = new StringBuilder();
+			for(int p = 0; p < count; p++)
+			{
+				//Every socket stays open until all are found, so the same port cannot be chosen twice
+				ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+				sockets.add(socket);
+				if(p > 0) ports.append(',');
+				ports.append(socket.getLocalPort());
+			}
+			return ports.toString();
+		}
+		finally
+		{
+			for(ServerSocket socket : sockets) socket.close();
+		}
+	}
+
+	/**
+	 * Deletes a file, or a directory and everything in it.
+	 * @throws IOException If anything cannot be deleted.
+	 */
+	private static void delete(File file) throws IOException
+	{
+		File children[] = file.listFiles();
+		if(children != null)
+		{
+			for(File child : children)
+			{
+				delete(child);
+			}
+		}
+		Files.delete(file.toPath());
+	}
+
+	/**
+	 * Reads a worker's output to the end, keeping the last line. Every worker's output is read at once, on a thread each,
+	 * so that no worker can block on a full pipe while the shards next to it wait for it.
+	 */
+	private static class OutputReader extends Thread
+	{
+		private BufferedReader output;
+		private String last; //The last line the worker wrote, read once the thread has been joined
+
+		private OutputReader(Process worker)
+		{
+			super("shard-output");
+			setDaemon(true);
+			output = new BufferedReader(new InputStreamReader(worker.getInputStream()));
+		}
+
+		public void run()
+		{
+			try
+			{
+				String line;
+				while((line = output.readLine()) != null)
+				{
+					last = line;
+				}
+			}
+			catch(IOException e)
+			{
+				//the worker has gone, and its exit status says whether it failed
+			}
+		}
+	}
+}
@@ -1,6 +1,5 @@
 import java.awt.Color;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Random;
 
 /**
  * A simple model of a shark.
@@ -19,12 +18,16 @@ public class Shark extends Fish
     private static final int STAMINA = 300; //The maximum hunger level a shark can achieve before death
 	
     //Static variables 
-    private static int MAX_AGE = 150; //The maximum age of an instance of shark, default is 50
     private static Color COLOUR = Color.blue; //Set the colour of all shark
     
     //Public static variables
 	public static boolean REPORT_DINNER = false; //Determines if a groper reports its dinner to the console	
 	public static boolean enableSharkAvoidance = true; //Determines if a shark will seek to avoid other sharks
+	public static int visionRadius = 1; //How far away a shark can sense prey, above 1 sharks head for prey they sense
+	public static int huntingRange = 0; //How far away a shark can track prey around rocks, above 0 sharks follow the ocean's prey field
+	public static int avoidanceRadius = 2; //How far away a shark can sense other sharks it avoids
+	
+	private static final int PREY = Species.HERRING.getMask() | Species.GROPER.getMask(); //The species sharks eat
 	
 	/**
 	 * Shark constructor, only to be called by Fish class
@@ -43,39 +46,30 @@ public class Shark extends Fish
 	}
 
     /**
-     * A shark analyses its surroundings looking for herring or groper. It will replace a herring it finds with a groper if one is found later.
-     * @param surroundings List of locations around shark
+     * Creates a shark of random age, drawing from the given random object, see Fish.
+     * @param rand The random object to draw from.
+     * @param location The location of the shark.
+     */
+    public Shark(Random rand, Location location)
+	{
+		super(rand, location);
+	}
+
+    /**
+     * A shark analyses its surroundings looking for herring or groper. It prefers groper, and chooses at random between fish it likes equally.
      * @return Will return location of preferred fish if found, else will return null; 
      */
-	protected Location findLocationOfFood(List<Location> surroundings)
+	protected Location findLocationOfFood()
 	{
-    	Fish dinner = null;
-    	Location locationOfDinner = null;
-		for(Location lookingAt : surroundings)
-		{
-			Fish potentialDinner = currentOcean.getOceanSquareAtLocation(lookingAt).getFish();
-			if(potentialDinner != null && (potentialDinner instanceof Herring || potentialDinner instanceof Groper))
-			{
-				if(dinner == null)
-				{
-					if(REPORT_DINNER) thoughts += "Yay" + potentialDinner.toString() + " for dinner.";
-					dinner = potentialDinner;
-				}
-				else
-				{
-					if(dinner instanceof Herring && potentialDinner instanceof Groper)
-					{
-						if(REPORT_DINNER) thoughts += " Wait a minute! I'd prefer" + potentialDinner.toString() + " for dinner. ";
-						dinner = potentialDinner;
-					}
-				}
-			}
-		}
-		if(dinner != null)
-		{
-			eat(dinner);
-			locationOfDinner = dinner.getLocation();
-		}
+		int dinners = notYetMoved(currentOcean.neighbourMask(location, Species.GROPER.getMask()));
+		if(dinners == 0) dinners = notYetMoved(currentOcean.neighbourMask(location, Species.HERRING.getMask()));
+		if(dinners == 0) return null;
+		
+		Location locationOfDinner = currentOcean.neighbour(location, Ocean.randomDirection(dinners, rand()));
+		Fish dinner = currentOcean.getFishAt(locationOfDinner);
+		if(dinner == null) return null; //only when fish act at once, the dinner left since the mask was read
+		if(REPORT_DINNER) thoughts += "Yay" + dinner.toString() + " for dinner.";
+		eat(dinner);
 		return locationOfDinner;
 	}
     
@@ -86,66 +80,60 @@ public class Shark extends Fish
 	 */
     private void eat(Fish dinner)
     {
-    	if(dinner instanceof Herring) decreaseHunger(25);
-    	else if(dinner instanceof Groper) decreaseHunger(50);
-		dinner.die(ReasonForDeath.EATEN);
+		eat(dinner, dinner instanceof Groper ? 50 : 25);
 		if(REPORT_DINNER) thoughts += "I have eaten" + dinner.toString() + " My hunger is now " + getHunger() + "\n";
     }
     
     /**
-     * If sharks are told to avoid other sharks they will look at empty location in their surroundings
-     * and preference each one based on how far away they are from other sharks in their surroundings
-     * @param surroundings List of locations around shark
-     * @return Returns preferred location, either based on shark avoidance or defaulting to a free adjacent location. Can be null if no free locations.
+     * If sharks are told to avoid other sharks they will look at empty locations in their surroundings
+     * and choose the one least crowded by other sharks within avoidanceRadius, read from the ocean's repulsion field.
+     * If sharks can sense further than their surroundings they will first head towards the nearest prey they sense,
+     * and if they hunt they will then follow the prey field towards prey within huntingRange.
+     * @return Returns preferred location, either towards prey, based on shark avoidance or defaulting to a free adjacent location. Can be null if no free locations.
      */
-    protected Location chooseNextLocation(List<Location> surroundings)
+    protected Location chooseNextLocation()
 	{
-		Location preferredLocation = updatedOcean.freeAdjacentLocation(this.location);
-		
-		if(enableSharkAvoidance)
+    	if(visionRadius > 1)
+    	{
+    		Fish prey = senseNearest(visionRadius, PREY);
+    		if(prey != null)
+    		{
+    			Location towardsPrey = approach(prey.getLocation());
+    			if(towardsPrey != null) return towardsPrey;
+    		}
+    	}
+    	if(huntingRange > 0)
+    	{
+    		Location towardsPrey = followPreyField();
+    		if(towardsPrey != null) return towardsPrey;
+    	}
+    	
+		RepulsionField repulsion = updatedOcean.getSharkRepulsion();
+		if(enableSharkAvoidance && repulsion != null)
 		{
-			//Creates lists of nearby sharks and empty locations
-			List<Location> locationOfSharks = new ArrayList<Location>();
-			List<Location> emptyLocations = new ArrayList<Location>();
-			
-			for(Location lookingAt : surroundings)
+			int emptyLocations = updatedOcean.emptyNeighbourMask(location);
+			if(emptyLocations != 0)
 			{
-				Fish f = updatedOcean.getFishAt(lookingAt);
-				if(f != null)
+				int leastCrowded = Integer.MAX_VALUE;
+				int preferredLocations = 0;
+				for(int empty = emptyLocations; empty != 0; empty &= empty - 1)
 				{
-					if(f instanceof Shark)
+					int d = Integer.numberOfTrailingZeros(empty);
+					int crowding = repulsion.get(location.getRow() + Ocean.DIRECTION_ROW[d], location.getCol() + Ocean.DIRECTION_COL[d]);
+					if(crowding < leastCrowded)
 					{
-						locationOfSharks.add(f.getLocation());
+						preferredLocations = 1 << d;
+						leastCrowded = crowding;
 					}
-				}
-				else if(updatedOcean.getOceanSquareAtLocation(lookingAt).isEmpty())
-				{
-					emptyLocations.add(lookingAt);
-				}
-			}
-			//If there are sharks nearby
-			if(locationOfSharks.size() > 0)
-			{
-				int mostPreferrabled = 0;
-				for(Location emptyLocation : emptyLocations)
-				{
-					//Determines preferability of a free square based on all the sharks nearby
-					int preferability = 0;
-					for(Location locationOfShark : locationOfSharks)
+					else if(crowding == leastCrowded)
 					{
-						
-						preferability = Math.abs(locationOfShark.getCol() - emptyLocation.getCol());
-						preferability += Math.abs(locationOfShark.getRow() - emptyLocation.getRow());
-						if(preferability > mostPreferrabled)
-						{
-							preferredLocation = emptyLocation;
-							mostPreferrabled = preferability;
-						}
+						preferredLocations |= 1 << d;
 					}
 				}
+				return updatedOcean.neighbour(location, Ocean.randomDirection(preferredLocations, rand()));
 			}
 		}
-		return preferredLocation;
+		return updatedOcean.freeAdjacentLocation(this.location, rand());
 	}
     
     /**
@@ -164,23 +152,6 @@ public class Shark extends Fish
 		return MAX_LITTER_SIZE;
 	}
 	
-	/**
-     * @return Returns maximum age of this shark
-     */
-	protected int getMaxAge()
-	{
-		return MAX_AGE;
-	}
-	
-	/**
-	 * Sets the maximum age of this shark
-	 * @param age Maximum age
-	 */
-	protected void setMaxAge(int age)
-	{
-		MAX_AGE = age;
-	}
-	
 	/**
      * @return Returns average maximum age of sharks
      */
@@ -205,6 +176,14 @@ public class Shark extends Fish
 		return STAMINA;
 	}
     
+	/**
+     * @return Returns the species of sharks
+     */
+	public Species getSpecies()
+	{
+		return Species.SHARK;
+	}
+    
 	/**
      * @return Returns the colour of all sharks
      */
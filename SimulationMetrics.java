@@ -0,0 +1,324 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Live metrics of a running simulation, written once per step by the thread running the steps and read at any time by JMX or MetricsServer.
+ * Nothing is locked: each value is an atomic or volatile field with a single writer, so reading never holds up a step,
+ * but a reading part way through a step may mix values from that step and the one before.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class SimulationMetrics implements SimulationMetricsMXBean
+{
+	public static final String OBJECT_NAME = "fishsim:type=Simulation";
+	public static final double LATENCY_BOUNDS_MILLIS[] = {0.5, 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000}; //Upper bounds of the histogram buckets
+	private static final long RATE_WINDOW = 1000000000L; //Steps per second is worked out over at least this many nanoseconds
+
+	private static AtomicInteger instances = new AtomicInteger(); //The last instance number added to OBJECT_NAME for a simulation registered while another held it
+	private static com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private volatile long steps;
+	private volatile long latencySum; //The total time of every step in nanoseconds
+	private AtomicLongArray latencyCounts; //The steps in each histogram bucket, with one more bucket than bounds for slower steps
+	private AtomicIntegerArray population; //The living fish of each species, by species code
+	private volatile int births;
+	private volatile int deaths;
+	private volatile long totalBirths;
+	private volatile long totalDeaths;
+	private volatile long allocatedBytes;
+	private volatile long totalAllocatedBytes;
+	private volatile int actors;
+	private AtomicLongArray phaseAllocatedBytes; //The bytes allocated by the thread running each phase since the start, by phase
+	private volatile double stepsPerSecond;
+	private long rateWindowStart; //When the current window for steps per second started, only used by the stepping thread
+	private long rateWindowSteps; //Steps at the start of the window, only used by the stepping thread
+	private ObjectName registeredName; //The name the metrics are registered under, null while they are not
+
+	/**
+	 * Create metrics with no steps recorded.
+	 */
+	public SimulationMetrics()
+	{
+		latencyCounts = new AtomicLongArray(LATENCY_BOUNDS_MILLIS.length + 1);
+		population = new AtomicIntegerArray(Species.values().length + 1);
+		phaseAllocatedBytes = new AtomicLongArray(StepPhase.values().length);
+		rateWindowStart = System.nanoTime();
+	}
+
+	/**
+	 * @return The bytes allocated so far by the calling thread.
+	 */
+	public static long allocatedBytes()
+	{
+		return threadBean.getCurrentThreadAllocatedBytes();
+	}
+
+	/**
+	 * Records a step, to be called only by the thread running the steps.
+	 * @param time The time the step took in nanoseconds.
+	 * @param actorCount The size of the actor list at the end of the step.
+	 * @param born The number of actors born in the step.
+	 * @param died The number of dead actors removed in the step.
+	 * @param allocated The bytes allocated by the thread running the step.
+	 * @param living The living fish of each species at the end of the step, by species code.
+	 */
+	public void recordStep(long time, int actorCount, int born, int died, long allocated, int living[])
+	{
+		int bucket = 0;
+		while(bucket < LATENCY_BOUNDS_MILLIS.length && time > LATENCY_BOUNDS_MILLIS[bucket] * 1000000) bucket++;
+		latencyCounts.incrementAndGet(bucket);
+		latencySum += time;
+		for(Species species : Species.values())
+		{
+			population.set(species.getCode(), living[species.getCode()]);
+		}
+		births = born;
+		deaths = died;
+		totalBirths += born;
+		totalDeaths += died;
+		allocatedBytes = allocated;
+		totalAllocatedBytes += allocated;
+		actors = actorCount;
+		steps++;
+
+		long now = System.nanoTime();
+		if(now - rateWindowStart >= RATE_WINDOW)
+		{
+			stepsPerSecond = (steps - rateWindowSteps) * 1e9 / (now - rateWindowStart);
+			rateWindowStart = now;
+			rateWindowSteps = steps;
+		}
+	}
+
+	/**
+	 * Records the bytes allocated by a phase of a step, to be called by the thread running the phase.
+	 * That is the stepping thread, or a SnapshotPipeline's thread for stats and render when steps are shown from snapshots.
+	 * Only the thread running the phase is counted, so work a phase hands to the Workers threads is not.
+	 * @param phase The phase.
+	 * @param allocated The bytes allocated by the thread running the phase.
+	 */
+	public void recordPhase(StepPhase phase, long allocated)
+	{
+		phaseAllocatedBytes.addAndGet(phase.ordinal(), allocated);
+	}
+
+	/**
+	 * Registers these metrics with the platform MBean server, under OBJECT_NAME unless another simulation in the process
+	 * already holds it, in which case under OBJECT_NAME with an instance number added.
+	 */
+	public void register()
+	{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try
+		{
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			while(true)
+			{
+				try
+				{
+					server.registerMBean(this, name);
+					registeredName = name;
+					return;
+				}
+				catch(InstanceAlreadyExistsException e)
+				{
+					name = new ObjectName(OBJECT_NAME + ",instance=" + instances.incrementAndGet());
+				}
+			}
+		}
+		catch(JMException e)
+		{
+			throw new RuntimeException("Could not register metrics as " + OBJECT_NAME, e);
+		}
+	}
+
+	/**
+	 * Removes these metrics from the platform MBean server, if they are registered.
+	 */
+	public void unregister()
+	{
+		if(registeredName == null) return;
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+		}
+		catch(JMException e)
+		{
+			throw new RuntimeException("Could not unregister metrics " + registeredName, e);
+		}
+		finally
+		{
+			registeredName = null;
+		}
+	}
+
+	public long getSteps()
+	{
+		return steps;
+	}
+
+	public double getStepsPerSecond()
+	{
+		return stepsPerSecond;
+	}
+
+	public double[] getStepLatencyBoundsMillis()
+	{
+		return LATENCY_BOUNDS_MILLIS.clone();
+	}
+
+	public long[] getStepLatencyCounts()
+	{
+		long counts[] = new long[latencyCounts.length()];
+		for(int b = 0; b < counts.length; b++)
+		{
+			counts[b] = latencyCounts.get(b);
+		}
+		return counts;
+	}
+
+	public double getMeanStepLatencyMillis()
+	{
+		long count = steps;
+		if(count == 0) return 0;
+		return latencySum / 1e6 / count;
+	}
+
+	public Map<String, Integer> getPopulation()
+	{
+		Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+		for(Species species : Species.values())
+		{
+			counts.put(species.name(), population.get(species.getCode()));
+		}
+		return counts;
+	}
+
+	public int getBirthsLastStep()
+	{
+		return births;
+	}
+
+	public int getDeathsLastStep()
+	{
+		return deaths;
+	}
+
+	public long getTotalBirths()
+	{
+		return totalBirths;
+	}
+
+	public long getTotalDeaths()
+	{
+		return totalDeaths;
+	}
+
+	public long getAllocatedBytesLastStep()
+	{
+		return allocatedBytes;
+	}
+
+	public long getTotalAllocatedBytes()
+	{
+		return totalAllocatedBytes;
+	}
+
+	public int getActors()
+	{
+		return actors;
+	}
+
+	public Map<String, Long> getPhaseAllocatedBytes()
+	{
+		Map<String, Long> bytes = new LinkedHashMap<String, Long>();
+		for(StepPhase phase : StepPhase.values())
+		{
+			bytes.put(phase.getLabel(), phaseAllocatedBytes.get(phase.ordinal()));
+		}
+		return bytes;
+	}
+
+	/**
+	 * @param phase A phase of a step.
+	 * @return The bytes allocated by the thread running the phase since the simulation started.
+	 */
+	public long getAllocatedBytes(StepPhase phase)
+	{
+		return phaseAllocatedBytes.get(phase.ordinal());
+	}
+
+	/**
+	 * @return The metrics in the Prometheus text exposition format.
+	 */
+	public String toPrometheus()
+	{
+		StringBuffer buffer = new StringBuffer();
+		metric(buffer, "fishsim_steps_total", "counter", "Steps run", steps);
+		metric(buffer, "fishsim_steps_per_second", "gauge", "Steps run per second over the last second or so", stepsPerSecond);
+
+		buffer.append("# HELP fishsim_step_latency_seconds Time taken by each step\n");
+		buffer.append("# TYPE fishsim_step_latency_seconds histogram\n");
+		long counts[] = getStepLatencyCounts();
+		long cumulative = 0;
+		for(int b = 0; b < counts.length; b++)
+		{
+			cumulative += counts[b];
+			String bound = b < LATENCY_BOUNDS_MILLIS.length ? number(LATENCY_BOUNDS_MILLIS[b] / 1000) : "+Inf";
+			buffer.append("fishsim_step_latency_seconds_bucket{le=\"" + bound + "\"} " + cumulative + "\n");
+		}
+		buffer.append("fishsim_step_latency_seconds_sum " + number(latencySum / 1e9) + "\n");
+		buffer.append("fishsim_step_latency_seconds_count " + cumulative + "\n");
+
+		buffer.append("# HELP fishsim_population Living fish of each species\n");
+		buffer.append("# TYPE fishsim_population gauge\n");
+		for(Species species : Species.values())
+		{
+			buffer.append("fishsim_population{species=\"" + species.name().toLowerCase(Locale.ROOT) + "\"} " + population.get(species.getCode()) + "\n");
+		}
+		metric(buffer, "fishsim_births", "gauge", "Actors born in the last step", births);
+		metric(buffer, "fishsim_births_total", "counter", "Actors born", totalBirths);
+		metric(buffer, "fishsim_deaths", "gauge", "Dead actors removed in the last step", deaths);
+		metric(buffer, "fishsim_deaths_total", "counter", "Dead actors removed", totalDeaths);
+		metric(buffer, "fishsim_allocated_bytes", "gauge", "Bytes allocated by the stepping thread in the last step", allocatedBytes);
+		metric(buffer, "fishsim_allocated_bytes_total", "counter", "Bytes allocated by the stepping thread", totalAllocatedBytes);
+		buffer.append("# HELP fishsim_phase_allocated_bytes_total Bytes allocated by the stepping thread in each phase of a step\n");
+		buffer.append("# TYPE fishsim_phase_allocated_bytes_total counter\n");
+		for(StepPhase phase : StepPhase.values())
+		{
+			buffer.append("fishsim_phase_allocated_bytes_total{phase=\"" + phase.getLabel() + "\"} " + phaseAllocatedBytes.get(phase.ordinal()) + "\n");
+		}
+		metric(buffer, "fishsim_actors", "gauge", "Size of the actor list", actors);
+		return buffer.toString();
+	}
+
+	/**
+	 * Appends a metric with a single value.
+	 */
+	private static void metric(StringBuffer buffer, String name, String type, String help, double value)
+	{
+		buffer.append("# HELP " + name + " " + help + "\n");
+		buffer.append("# TYPE " + name + " " + type + "\n");
+		buffer.append(name + " " + number(value) + "\n");
+	}
+
+	/**
+	 * @return A value as Prometheus writes numbers, without a fraction when it is whole.
+	 */
+	private static String number(double value)
+	{
+		if(value == Math.rint(value) && Math.abs(value) < 1e15) return Long.toString((long) value);
+		return Double.toString(value);
+	}
+}
@@ -0,0 +1,80 @@
+import java.util.Map;
+
+/**
+ * The live metrics of a running simulation, as seen over JMX. See SimulationMetrics.
+ *
+ * @author Matthew Maglennon
+ */
+
+public interface SimulationMetricsMXBean
+{
+	/**
+	 * @return The number of steps run.
+	 */
+	long getSteps();
+
+	/**
+	 * @return The number of steps run per second, over the last second or so.
+	 */
+	double getStepsPerSecond();
+
+	/**
+	 * @return The upper bound of each bucket of the step latency histogram in milliseconds, the last bucket has no bound.
+	 */
+	double[] getStepLatencyBoundsMillis();
+
+	/**
+	 * @return The number of steps whose time fell in each bucket of the step latency histogram.
+	 */
+	long[] getStepLatencyCounts();
+
+	/**
+	 * @return The mean time taken by a step in milliseconds.
+	 */
+	double getMeanStepLatencyMillis();
+
+	/**
+	 * @return The number of living fish of each species at the end of the last step.
+	 */
+	Map<String, Integer> getPopulation();
+
+	/**
+	 * @return The number of actors born in the last step.
+	 */
+	int getBirthsLastStep();
+
+	/**
+	 * @return The number of dead actors removed in the last step.
+	 */
+	int getDeathsLastStep();
+
+	/**
+	 * @return The number of actors born since the simulation started.
+	 */
+	long getTotalBirths();
+
+	/**
+	 * @return The number of dead actors removed since the simulation started.
+	 */
+	long getTotalDeaths();
+
+	/**
+	 * @return The bytes allocated by the thread running the steps during the last step.
+	 */
+	long getAllocatedBytesLastStep();
+
+	/**
+	 * @return The bytes allocated by the thread running the steps since the simulation started.
+	 */
+	long getTotalAllocatedBytes();
+
+	/**
+	 * @return The size of the actor list, including any actors that died in the last step.
+	 */
+	int getActors();
+
+	/**
+	 * @return The bytes allocated by the thread running the steps in each phase of a step since the simulation started.
+	 */
+	Map<String, Long> getPhaseAllocatedBytes();
+}
@@ -1,6 +1,9 @@
 import java.awt.Color;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
@@ -19,11 +22,43 @@ import java.util.Random;
 public class Simulator
 {
     private Ocean currentOcean; //Reference to current ocean for this simulator
+    private OceanType oceanType; //How the oceans store their squares
     private Ocean updatedOcean; //Reference to updated ocean for this simulator
     private List<Actor> actors; //List of all actors in the ocean
     private List<Actor> newActors; //List to store actors to be added to the actors list per step
-    private SimulatorView simView; //Simulator view object, used for interface
+    private LifeCycle lifeCycle; //Kills fish of old age and starvation and lets them breed once old enough
+    private IntentPipeline pipeline; //Lets fish decide and then carries out their decisions, when intentPipeline is set
+    private BandedStep bands; //Acts the fish band by band of rows, when bandedSteps is set
+    private ConcurrentActing concurrentActing; //Lets fish act at once on several threads, null unless the oceans are concurrent
+    private SimulatorView simView; //Simulator view object, used for interface, null when headless
+    private OceanStats headlessStats; //Counts the fish to decide viability when there is no view
+    private int step; //The number of steps run so far
+    private int actsUntilSample; //Acts left before the next is timed by an ActEvent
+    private SimulationMetrics metrics; //Live metrics of each step, null when not collected
+    private int living[]; //The living fish of each species by species code, counted for the metrics and history
+    private long livingHunger; //The hunger of all living fish added up, counted with living
+    private PopulationHistory history; //The history of the population, births, deaths and plankton, null when not kept
+    private double historyRow[]; //The values of the step being appended to the history
+    private int deathsByReason[]; //The dead actors removed in the step by reason for death, counted for the history
+    private StepPhase runningPhase; //The phase running, phases never overlap
+    private long phaseStartAllocated; //The bytes the stepping thread had allocated when the phase began
     public static boolean fishingTrip = false; //Set as true to enable party mode
+    public static StepScheduler.Mode schedulingMode = StepScheduler.Mode.FIXED_RATE; //How steps are paced and which are shown
+    public static PlanktonTransport planktonTransport = null; //Moves plankton between squares each step, null to leave plankton where it is
+    public static int randomRocks = 0; //Rocks are scattered in a grid of this many by this many segments, 0 for no rocks
+    public static String terrainFile = System.getProperty("fishsim.terrain"); //Coastlines and reefs are loaded from this image or mask file, see Terrain, null for none
+    public static boolean enableMetrics = true; //Set as false to not collect live metrics of each step
+    public static int metricsPort = Integer.getInteger("fishsim.metricsPort", 0); //Live metrics are served over HTTP on this local port while running, 0 for none
+    public static boolean intentPipeline = false; //Set as true to have every fish decide from the current ocean in parallel before any decision is carried out, see IntentPipeline
+    public static boolean bandedSteps = false; //Set as true to act the fish band by band of rows, each band drawing from a random object of its own, giving the same results as a ShardedSimulator for the same seed, see BandedStep
+    public static int sortActorsPeriod = 0; //Every this many steps the actors are put in SpatialOrder before acting, 0 to leave them in the order they were added
+    public static int historyCapacity = 1024; //The steps of population history kept at each resolution, see PopulationHistory, 0 to keep none
+    public static int historyLevels = 5; //The resolutions population history is kept at, each PopulationHistory.FACTOR times coarser than the last
+    public static String historyFile = System.getProperty("fishsim.history"); //The population history is written here at the end of run, as CSV if the name ends in .csv and otherwise in binary, null for nowhere
+    public static int actSamplePeriod = 1000; //One act in this many is timed for flight recordings by an ActEvent, 0 for none
+    public static boolean singleBuffer = false; //Set as true to keep one ocean updated in place rather than a current and an updated ocean, halving the memory of the oceans. Not for the intent pipeline or concurrent oceans
+    public static int snapshotDepth = 0; //Steps are counted and shown from a ring of this many snapshots on another thread while the next steps run, 0 to count and show each step before the next, see SnapshotPipeline
+    public static boolean printTimings = Boolean.getBoolean("fishsim.printTimings"); //Set as true to print how the steps were paced, and how often a snapshot had to be waited for, at the end of run
         
     /**
      * Create the simulator and run it.
@@ -43,11 +78,45 @@ public class Simulator
      */
     public Simulator(int height, int width)
     {
-        currentOcean = new Ocean(height, width);
-        updatedOcean = new Ocean(height, width);
+        this(height, width, OceanType.DENSE);
+    }
+    
+    /**
+     * Creates a new simulator of given height and width using the given type of ocean.
+     * @param height The height of the simulator
+     * @param width The width of the simulator
+     * @param oceanType How the oceans should store their squares, use SPARSE for very large worlds
+     */
+    public Simulator(int height, int width, OceanType oceanType)
+    {
+        this(height, width, oceanType, false);
+    }
+    
+    /**
+     * Creates a new simulator, optionally without a window so that it can be run where there is no display.
+     * @param height The height of the simulator
+     * @param width The width of the simulator
+     * @param oceanType How the oceans should store their squares, use SPARSE for very large worlds
+     * @param headless True to run without showing the ocean
+     */
+    public Simulator(int height, int width, OceanType oceanType, boolean headless)
+    {
+        this.oceanType = oceanType;
+        currentOcean = oceanType.createOcean(height, width);
+        if(singleBuffer)
+        {
+        	//fish acting in place need to act one at a time and move as they decide
+        	if(intentPipeline || currentOcean instanceof ConcurrentOcean) throw new IllegalArgumentException("An ocean updated in place cannot be used with the intent pipeline or a concurrent ocean");
+        	updatedOcean = currentOcean;
+        }
+        else updatedOcean = oceanType.createOcean(height, width);
+        if(bandedSteps && (intentPipeline || singleBuffer || currentOcean instanceof ConcurrentOcean)) throw new IllegalArgumentException("Banded steps need separate oceans whose fish act one at a time, not the intent pipeline, an ocean updated in place or a concurrent ocean");
         actors = new ArrayList<Actor>();
         newActors = new ArrayList<Actor>();
-        simView = new SimulatorView(height, width);
+        lifeCycle = new LifeCycle();
+        if(currentOcean instanceof ConcurrentOcean) concurrentActing = new ConcurrentActing();
+        if(headless) headlessStats = new OceanStats();
+        else simView = new SimulatorView(height, width);
         // define in which colour fish should be shown
         Shark.setColour(Color.getHSBColor(0.55f, 0.5f, 0.3f));
         Groper.setColour(Color.getHSBColor(0.65f, 0.6f, 1f));
@@ -57,62 +126,451 @@ public class Simulator
         Herring.enableDirectionMaintenance = true;
         Shark.enableSharkAvoidance = true;
         Simulator.fishingTrip = false;
+        if(enableMetrics) metrics = new SimulationMetrics();
+        if(historyCapacity > 0)
+        {
+        	history = new PopulationHistory(historyColumns(), historyCapacity, historyLevels);
+        	historyRow = new double[history.getColumns().length];
+        	deathsByReason = new int[ReasonForDeath.values().length];
+        }
+        if(metrics != null || history != null) living = new int[Species.values().length + 1];
     }
     
     /**
-     * Runs the simulation.
+     * Runs the simulation, pacing steps according to schedulingMode. Step timing statistics are printed at the end if printTimings is set.
      * @param steps The number of steps to go through in the simulation
-     * @param timePerStep The pause in ms between each step. Adjust for slower simulations.
+     * @param timePerStep The target time in ms from the start of one step to the start of the next, compute and display included.
      */
     public void run(int steps, int timePerStep)
+    {
+    	setUp();
+    	MetricsServer server = null;
+    	if(metrics != null)
+    	{
+    		//publish the metrics over JMX, and over HTTP if a port is set
+    		metrics.register();
+    		if(metricsPort > 0)
+    		{
+    			try
+    			{
+    				server = new MetricsServer(metrics, metricsPort);
+    			}
+    			catch(IOException e)
+    			{
+    				System.err.println("Could not serve metrics on port " + metricsPort + ": " + e);
+    			}
+    		}
+    	}
+    	//the metrics are let go however the run ends, so that a later simulation in the process can publish its own
+    	try
+    	{
+    		StepScheduler scheduler = new StepScheduler(schedulingMode, timePerStep);
+    		SnapshotPipeline snapshots = null;
+    		if(snapshotDepth > 0) snapshots = new SnapshotPipeline(snapshotDepth, oceanType.getSnapshotType(), currentOcean.getHeight(), currentOcean.getWidth(), new SnapshotConsumer());
+    		scheduler.start();
+
+    		try
+    		{
+    			//for each step whilst the simulation is still viable
+    			if(snapshots != null) snapshots.publish(step, currentOcean, false);
+    			while(step < steps && (snapshots != null ? snapshots.isViable() : isViable()))
+    			{
+    				step();
+    				if(snapshots != null)
+    				{
+    					//the next step changes the current ocean, so it is copied for the pipeline's thread to count and show
+    					StepPhaseEvent phase = beginPhase(StepPhase.SNAPSHOT);
+    					snapshots.publish(step, currentOcean, simView != null && scheduler.shouldRender());
+    					endPhase(phase);
+    				}
+    				else if(simView != null)
+    				{
+    					if(scheduler.shouldRender())
+    					{
+    						StepPhaseEvent phase = beginPhase(StepPhase.RENDER);
+    						simView.showStatus(step, currentOcean);
+    						endPhase(phase);
+    					}
+    					else simView.statusSkipped();
+    				}
+
+    				//wait for the start of the next step
+    				scheduler.endStep();
+    			}
+    			if(snapshots != null)
+    			{
+    				snapshots.finish();
+    				if(printTimings) System.out.println("Waited for a free snapshot " + snapshots.getWaits() + " times");
+    			}
+    		}
+    		catch(InterruptedException e)
+    		{
+    			//stop the simulation
+    			Thread.currentThread().interrupt();
+    		}
+    		if(printTimings) System.out.println(scheduler);
+    		if(history != null && historyFile != null) writeHistory();
+    	}
+    	finally
+    	{
+    		if(server != null) server.stop();
+    		if(metrics != null) metrics.unregister();
+    	}
+    }
+    
+    /**
+     * Populates the ocean ready for the first step, to be called once before stepping the simulation.
+     * Called by run, and by anything that steps the simulation itself.
+     */
+    public void setUp()
     {
     	setupOcean(currentOcean);
-        int c = 1;
+    	if(bandedSteps)
+    	{
+    		//the bands' seed is drawn after the seeder's, as a ShardWorker draws them
+    		bands = new BandedStep(currentOcean.getHeight(), Randomizer.getRandom().nextLong());
+    		currentOcean.setRandom(bands.getRandom());
+    		updatedOcean.setRandom(bands.getRandom());
+    	}
+    }
+    
+    /**
+     * Runs one step: every actor acts, plankton moves and regenerates, then the updated ocean becomes the current ocean.
+     * With singleBuffer set there is only one ocean, which the actors update in place.
+     * Nothing is shown, see run. The step and each of its phases are timed by flight recorder events.
+     */
+    public void step()
+    {
+    	step++;
+    	long stepStart = System.nanoTime();
+    	long allocatedBefore = metrics != null ? SimulationMetrics.allocatedBytes() : 0;
+    	StepEvent stepEvent = new StepEvent();
+    	stepEvent.begin();
+    	newActors.clear();
+    	int deaths = 0;
+    	if(deathsByReason != null) Arrays.fill(deathsByReason, 0);
+    	if(updatedOcean == currentOcean) currentOcean.beginStepInPlace();
+    	
+    	StepPhaseEvent phase = beginPhase(StepPhase.LIFE_CYCLE);
+    	lifeCycle.advance(currentOcean);
+    	endPhase(phase);
+    	
+    	phase = beginPhase(StepPhase.PREY_FIELDS);
+    	computePreyFields();
+    	endPhase(phase);
+    	
+    	//for each actor in the actors list
+    	phase = beginPhase(StepPhase.ACT);
+    	if(sortActorsPeriod > 0 && step % sortActorsPeriod == 0) SpatialOrder.sort(actors, Randomizer.getRandom());
+    	for(Iterator<Actor> it = actors.iterator(); it.hasNext();)
+    	{
+    		Actor a = it.next();
+    		
+    		//if the actor is alive, ask them to act, unless they go through the intent pipeline, act at once or act band by band below. Output their thoughts to the console if they have any.
+    		if(a.isAlive())
+    		{
+    			if(intentPipeline || concurrentActing != null || bands != null) continue;
+        		String thoughts = act(a);
+        		if(thoughts != "")	System.out.println("Step: " + step + " |" + a.toString() + " says " + thoughts);
+        	}
+    		//if the actor is not alive, remove them for the list.
+    		else 
+    		{
+    			it.remove();
+    			deaths++;
+    			if(deathsByReason != null) deathsByReason[((Fish) a).getReasonForDeath().ordinal()]++;
+    			if(currentOcean.getSpatialIndex() != null) currentOcean.getSpatialIndex().remove((Fish) a);
+    		}
+    	}
+    	if(intentPipeline)
+    	{
+    		if(pipeline == null) pipeline = new IntentPipeline();
+    		pipeline.act(actors, currentOcean, updatedOcean, newActors, Randomizer.getRandom().nextLong(), step);
+    	}
+    	else if(concurrentActing != null)
+    	{
+    		concurrentActing.act(actors, currentOcean, updatedOcean, newActors);
+    	}
+    	else if(bands != null)
+    	{
+    		bands.act(currentOcean, updatedOcean, newActors, step);
+    	}
+    	actors.addAll(newActors); //add all new born animals to the actors list
+    	lifeCycle.addAll(newActors);
+    	endPhase(phase);
+    	
+    	//Each of two oceans only has its plankton moved and regenerated every other step, as it is the updated ocean,
+    	//so a single ocean does the same to keep the balance of the simulation
+    	if(updatedOcean != currentOcean || step % 2 == 0)
+    	{
+    		if(planktonTransport != null) //spread and carry plankton in the updated ocean
+    		{
+    			phase = beginPhase(StepPhase.PLANKTON_TRANSPORT);
+    			updatedOcean.transportPlankton(planktonTransport);
+    			endPhase(phase);
+    		}
+    		phase = beginPhase(StepPhase.PLANKTON_REGENERATION);
+    		updatedOcean.regeneratePlankton(); //regenerate plankton in the updated ocean
+    		endPhase(phase);
+    	}
+    	
+    	if(fishingTrip  || step > 1000) activatePartyMode();
         
-        //for each step whilst the simulation is still viable
-        while(c <= steps  && simView.isViable(currentOcean))
+    	//Make the current ocean the updated ocean, unless there is only the one
+    	if(updatedOcean != currentOcean)
+    	{
+    		phase = beginPhase(StepPhase.SWAP_AND_CLEAR);
+    		Ocean temp = currentOcean;
+    		currentOcean = updatedOcean;
+    		updatedOcean = temp;
+    		updatedOcean.clearFish();
+    		endPhase(phase);
+    	}
+        
+        stepEvent.step = step;
+        stepEvent.actors = actors.size();
+        stepEvent.births = newActors.size();
+        stepEvent.deaths = deaths;
+        stepEvent.commit();
+        
+        if(living != null) countLiving();
+        if(history != null) appendHistory();
+        if(metrics != null)
         {
-        	newActors.clear();
-        	
-        	//for each actor in the actors list
-        	for(Iterator<Actor> it = actors.iterator(); it.hasNext();)
-        	{
-        		Actor a = it.next();
-        		
-        		//if the actor is alive, ask them to act. Output their thoughts to the console if they have any.
-        		if(a.isAlive())
-        		{
-	        		String thoughts = a.act(currentOcean, updatedOcean, newActors);
-	        		if(thoughts != "")	System.out.println("Step: " + c + " |" + a.toString() + " says " + thoughts);
-	        	}
-        		//if the actor is not alive, remove them for the list.
-        		else 
-        			it.remove();
-        	}
-        	actors.addAll(newActors); //add all new born animals to the actors list
-        	updatedOcean.regeneratePlankton(); //regenerate plankton in the updated ocean
-        	
-        	//if a pause between steps is required, sleep the thread for this time.
-        	try
-        	{
-        		Thread.sleep(timePerStep);
-        	}
-        	catch(InterruptedException e)
-        	{
-        	}
-        	
-        	if(fishingTrip  || c > 1000) activatePartyMode();
-	        
-        	//Make the current ocean the updated ocean and update the visual display
-        	Ocean temp = currentOcean;
-        	currentOcean = updatedOcean;
-            updatedOcean = temp;
-            updatedOcean.clearFish();
-        	simView.showStatus(c, currentOcean);
-        	c++;
+        	long allocated = SimulationMetrics.allocatedBytes() - allocatedBefore;
+        	metrics.recordStep(System.nanoTime() - stepStart, actors.size(), newActors.size(), deaths, allocated, living);
         }
     }
     
+    /**
+     * Counts the living fish of each species in the actor list, and adds up their hunger.
+     */
+    private void countLiving()
+    {
+    	Arrays.fill(living, 0);
+    	livingHunger = 0;
+    	for(Actor a : actors)
+    	{
+    		if(!a.isAlive()) continue;
+    		Fish fish = (Fish) a;
+    		living[fish.getSpecies().getCode()]++;
+    		livingHunger += fish.getHunger();
+    	}
+    }
+    
+    /**
+     * @return The names of the history's columns: the population of each species, births, deaths by each reason, mean hunger and total plankton.
+     */
+    private static String[] historyColumns()
+    {
+    	List<String> columns = new ArrayList<String>();
+    	for(Species species : Species.values())
+    	{
+    		columns.add(species.name().toLowerCase());
+    	}
+    	columns.add("births");
+    	for(ReasonForDeath reason : ReasonForDeath.values())
+    	{
+    		columns.add("deaths_" + reason.name().toLowerCase());
+    	}
+    	columns.add("mean_hunger");
+    	columns.add("plankton");
+    	return columns.toArray(new String[columns.size()]);
+    }
+    
+    /**
+     * Appends the step to the history, in the order of historyColumns. Allocates nothing.
+     * Dead actors are counted in the step they are removed from the actor list, as they are for the metrics.
+     */
+    private void appendHistory()
+    {
+    	int c = 0;
+    	int count = 0;
+    	for(int code = 1; code < living.length; code++) //species codes follow the order of Species.values()
+    	{
+    		historyRow[c++] = living[code];
+    		count += living[code];
+    	}
+    	historyRow[c++] = newActors.size();
+    	for(int deaths : deathsByReason)
+    	{
+    		historyRow[c++] = deaths;
+    	}
+    	historyRow[c++] = count > 0 ? (double) livingHunger / count : 0;
+    	historyRow[c++] = currentOcean.getTotalPlankton();
+    	history.append(step, historyRow);
+    }
+    
+    /**
+     * @return The history of the population, births, deaths and plankton, or null if it is not kept.
+     */
+    public PopulationHistory getHistory()
+    {
+    	return history;
+    }
+    
+    /**
+     * Writes the history to historyFile, as CSV of the finest resolution if the name ends in .csv and otherwise in binary.
+     */
+    private void writeHistory()
+    {
+    	try
+    	{
+    		if(historyFile.endsWith(".csv")) history.writeCsv(Paths.get(historyFile), 0);
+    		else history.writeBinary(Paths.get(historyFile));
+    	}
+    	catch(IOException e)
+    	{
+    		System.err.println("Could not write the population history to " + historyFile + ": " + e);
+    	}
+    }
+    
+    /**
+     * @return The live metrics of each step, or null if they are not collected.
+     */
+    public SimulationMetrics getMetrics()
+    {
+    	return metrics;
+    }
+    
+    /**
+     * Starts a phase of a step, timing it with a flight recorder event and counting the bytes it allocates if metrics are collected.
+     * @param phase The phase starting.
+     * @return The event to pass to endPhase.
+     */
+    private StepPhaseEvent beginPhase(StepPhase phase)
+    {
+    	runningPhase = phase;
+    	if(metrics != null) phaseStartAllocated = SimulationMetrics.allocatedBytes();
+    	return new StepPhaseEvent(step, phase);
+    }
+    
+    /**
+     * Ends the phase started by beginPhase.
+     * @param event The event returned by beginPhase.
+     */
+    private void endPhase(StepPhaseEvent event)
+    {
+    	event.commit();
+    	if(metrics != null) metrics.recordPhase(runningPhase, SimulationMetrics.allocatedBytes() - phaseStartAllocated);
+    }
+    
+    /**
+     * Asks an actor to act, timing one act in every actSamplePeriod with an ActEvent.
+     * @param a The actor, which must be alive.
+     * @return The actor's thoughts.
+     */
+    private String act(Actor a)
+    {
+    	if(actSamplePeriod <= 0 || --actsUntilSample > 0) return a.act(currentOcean, updatedOcean, newActors);
+    	actsUntilSample = actSamplePeriod;
+    	ActEvent event = new ActEvent();
+    	event.begin();
+    	String thoughts = a.act(currentOcean, updatedOcean, newActors);
+    	event.step = step;
+    	event.species = a.getClass().getSimpleName();
+    	event.commit();
+    	return thoughts;
+    }
+    
+    /**
+     * @return True if the current ocean still has more than one species in it.
+     */
+    public boolean isViable()
+    {
+    	StepPhaseEvent phase = beginPhase(StepPhase.STATS);
+    	boolean viable;
+    	if(simView != null) viable = simView.isViable(currentOcean);
+    	else
+    	{
+    		headlessStats.reset();
+    		viable = headlessStats.isViable(currentOcean);
+    	}
+    	endPhase(phase);
+    	return viable;
+    }
+    
+    /**
+     * Counts and shows the snapshots of steps on the thread of a SnapshotPipeline, as run does itself when there is none.
+     * The phases are timed and their allocation counted on the pipeline's thread, so they overlap the phases of later steps.
+     */
+    private class SnapshotConsumer implements SnapshotPipeline.Consumer
+    {
+    	private OceanStats stats = new OceanStats(); //Counts the fish to decide viability when there is no view
+    	
+    	public boolean consume(int step, Ocean snapshot, boolean render)
+    	{
+    		if(simView != null)
+    		{
+    			if(render)
+    			{
+    				long allocated = metrics != null ? SimulationMetrics.allocatedBytes() : 0;
+    				StepPhaseEvent phase = new StepPhaseEvent(step, StepPhase.RENDER);
+    				simView.showStatus(step, snapshot);
+    				phase.commit();
+    				if(metrics != null) metrics.recordPhase(StepPhase.RENDER, SimulationMetrics.allocatedBytes() - allocated);
+    			}
+    			else simView.statusSkipped();
+    		}
+    		long allocated = metrics != null ? SimulationMetrics.allocatedBytes() : 0;
+    		StepPhaseEvent phase = new StepPhaseEvent(step, StepPhase.STATS);
+    		boolean viable;
+    		if(simView != null) viable = simView.isViable(snapshot);
+    		else
+    		{
+    			stats.reset();
+    			viable = stats.isViable(snapshot);
+    		}
+    		phase.commit();
+    		if(metrics != null) metrics.recordPhase(StepPhase.STATS, SimulationMetrics.allocatedBytes() - allocated);
+    		return viable;
+    	}
+    }
+    
+    /**
+     * @return The number of steps run so far.
+     */
+    public int getStep()
+    {
+    	return step;
+    }
+    
+    /**
+     * @return The number of actors, including any that died in the last step.
+     */
+    public int getActorCount()
+    {
+    	return actors.size();
+    }
+    
+    /**
+     * @return The actors, including any that died in the last step. Package private so that checks can inspect them.
+     */
+    List<Actor> getActors()
+    {
+    	return actors;
+    }
+    
+    /**
+     * @return The ocean as it is between steps. Package private so that checks can inspect it.
+     */
+    Ocean getCurrentOcean()
+    {
+    	return currentOcean;
+    }
+    
+    /**
+     * Recomputes the prey field of each species that hunts from where the prey are in the current ocean.
+     */
+    private void computePreyFields()
+    {
+    	for(Species hunter : Species.values())
+    	{
+    		FlowField field = currentOcean.getPreyField(hunter);
+    		if(field != null) field.compute(currentOcean);
+    	}
+    }
+    
     /**
      * TOP SECRET PARTY FUNCTION
      * Causes herring to increase their hue by 0.009 changing their colour.
@@ -132,53 +590,79 @@ public class Simulator
      */
     private void setupOcean(Ocean ocean)
     {
+    	//where there are to be rocks the terrain is laid first, so that the rocks added after are shared by both oceans and fish need not look for them
+    	//without rocks no terrain is needed, the squares fish can enter are worked out from the ocean's bounds
+    	if(terrainFile != null || randomRocks > 0)
+    	{
+    		Terrain terrain = terrainFile != null ? loadTerrain(ocean.getHeight(), ocean.getWidth()) : new Terrain(ocean.getHeight(), ocean.getWidth());
+    		currentOcean.setTerrain(terrain);
+    		if(updatedOcean != currentOcean) updatedOcean.setTerrain(terrain);
+    	}
+    	//fish that sense further than their surroundings need an index of where other fish are
+    	if(Shark.visionRadius > 1 || Groper.visionRadius > 1)
+    	{
+    		SpatialIndex index = new SpatialIndex(ocean.getHeight(), ocean.getWidth());
+    		currentOcean.setSpatialIndex(index);
+    		updatedOcean.setSpatialIndex(index);
+    	}
+    	//hunters follow fields of the distance to their prey, recomputed each step
+    	if(Shark.huntingRange > 0)
+    	{
+    		FlowField field = new FlowField(ocean.getHeight(), ocean.getWidth(), Species.HERRING.getMask() | Species.GROPER.getMask(), Shark.huntingRange);
+    		currentOcean.setPreyField(Species.SHARK, field);
+    		updatedOcean.setPreyField(Species.SHARK, field);
+    	}
+    	if(Groper.huntingRange > 0)
+    	{
+    		FlowField field = new FlowField(ocean.getHeight(), ocean.getWidth(), Species.HERRING.getMask(), Groper.huntingRange);
+    		currentOcean.setPreyField(Species.GROPER, field);
+    		updatedOcean.setPreyField(Species.GROPER, field);
+    	}
+    	//sharks keep away from each other by reading how crowded their surroundings are
+    	if(Shark.enableSharkAvoidance)
+    	{
+    		currentOcean.setSharkRepulsion(new RepulsionField(ocean.getHeight(), ocean.getWidth(), Shark.avoidanceRadius));
+    		updatedOcean.setSharkRepulsion(new RepulsionField(ocean.getHeight(), ocean.getWidth(), Shark.avoidanceRadius));
+    	}
+    	if(randomRocks > 0) addRandomRocks(randomRocks, 10);
     	populate(ocean);
-        //addRandomRocks(5, 10);
         //addRocks(new RockPattern(currentOcean.getWidth()/2 - 25, currentOcean.getHeight()/2 - 25, currentOcean.getWidth()/2 + 25, currentOcean.getHeight()/2 + 25));
     }
     
     /**
      * Used to create a starting line up of fish for an ocean simulation.
-     * Loops through each ocean square in the passed ocean and based on probability adds a selection of fish.
-     * These fish are also added to the list of actors.
+     * The fish are generated by an OceanSeeder seeded from the shared random object, and are also added to the list of actors
+     * in the random order the seeder gives them.
      * Based on foxes-and-rabbits-v2
      * @param ocean The ocean object to populate.
      */
     private void populate(Ocean ocean)
     {
-        Random rand = new Random();
         ocean.clearFish();
-        for(int row = 0; row < ocean.getHeight(); row++)
+        OceanSeeder seeder = new OceanSeeder(Randomizer.getRandom().nextLong(), ocean.getHeight(), ocean.getWidth());
+        for(Fish fish : seeder.generate(0, ocean.getHeight(), ocean))
         {
-            for(int col = 0; col < ocean.getWidth(); col++)
-            {
-            	Location location = new Location(row, col);
-            	if(ocean.getOceanSquareAtLocation(location).isEmpty())
-	            	{
-	            	if(rand.nextDouble() <= 0.0015)
-	                {
-	                    Shark shark = new Shark(true, location);
-	                    actors.add(shark);
-	                    ocean.addFish(shark);
-	                }
-	                else if(rand.nextDouble() <= 0.004)
-	                {
-	                    Herring herring = new Herring(true, location);
-	                    actors.add(herring);
-	                    ocean.addFish(herring);
-	                }
-	                else if(rand.nextDouble() <= 0.0015)
-	                {
-	                    Groper groper = new Groper(true, location);
-	                    actors.add(groper);
-	                    ocean.addFish(groper);
-	                }
-            	}
-                // else leave the location empty.
-            }
+            actors.add(fish);
+            lifeCycle.add(fish);
+            ocean.addFish(fish);
+            if(ocean.getSpatialIndex() != null) ocean.getSpatialIndex().add(fish);
         }
-        //Shuffle the actors so that they will act in a random order.
-        Collections.shuffle(actors);
+    }
+    
+    /**
+     * Loads the terrain from terrainFile, stretched to fit the ocean.
+     * @return The terrain.
+     */
+    private Terrain loadTerrain(int height, int width)
+    {
+    	try
+    	{
+    		return Terrain.load(Paths.get(terrainFile), height, width);
+    	}
+    	catch(IOException e)
+    	{
+    		throw new UncheckedIOException(e);
+    	}
     }
     
     /**
@@ -186,10 +670,9 @@ public class Simulator
      * @param number Number of rocks to add.
      * @param maxSize Maximum size of rocks, must be based on number of segments.
      */
-    @SuppressWarnings("unused")
-	private void addRandomRocks(int number, int maxSize)
+    private void addRandomRocks(int number, int maxSize)
     {
-    	Random random = new Random();
+    	Random random = Randomizer.getRandom();
     	int oceanSegmentWidth = updatedOcean.getWidth() / number;
     	int oceanSegmentHeight = updatedOcean.getHeight() / number;
     	for(int c = 0; c <= updatedOcean.getWidth() - oceanSegmentWidth; c += oceanSegmentWidth)
@@ -215,8 +698,8 @@ public class Simulator
     {
     	for(Location rockLocation : rockPattern.getRockPattern())
     	{
-    		currentOcean.getOceanSquareAtLocation(rockLocation).addRock();
-    		updatedOcean.getOceanSquareAtLocation(rockLocation).addRock();
+    		currentOcean.addRock(rockLocation);
+    		updatedOcean.addRock(rockLocation);
     	}
     }
 }
\ No newline at end of file
@@ -28,6 +28,8 @@ public class SimulatorView extends JFrame
     
     // A statistics object computing and storing simulation information
     private OceanStats stats;
+    // Paints the ocean onto the image shown by the ocean view
+    private OceanPainter painter;
 
     /**
      * Create a view of the given width and height.
@@ -37,6 +39,7 @@ public class SimulatorView extends JFrame
     public SimulatorView(int height, int width)
     {
         stats = new OceanStats();
+        painter = new OceanPainter();
 
         setTitle("SimOcean");
         stepLabel = new JLabel(STEP_PREFIX, JLabel.CENTER);
@@ -72,39 +75,22 @@ public class SimulatorView extends JFrame
 
         stats.reset();
         oceanView.preparePaint();
-        
-        for(int row = 0; row < ocean.getHeight(); row++)
-        {
-            for(int col = 0; col < ocean.getWidth(); col++)
-            {
-            	Location l = new Location(row, col);
-            	OceanSquare os = ocean.getOceanSquareAtLocation(l);
-	            if(os.hasFish())
-	            {
-	            	Fish fish = os.getFish();
-	                stats.incrementCount(fish.getClass());
-	                oceanView.drawMark(l.getCol(), l.getRow(), fish.getColour());
-	            }
-	            else if(os.hasRock())
-	            {
-	            	oceanView.drawMark(l.getCol(), l.getRow(), os.getRock().getColour());
-	            }
-	            else
-	            {
-	            	Double planktonDouble = Math.floor((os.getPlanktonLevel()*100)/100);
-	            	Float planktonFloat = Float.parseFloat(planktonDouble.toString());
-	            	planktonFloat = planktonFloat / 40;
-	            	if(planktonFloat < 0) planktonFloat = 0f;
-	                oceanView.drawMark(l.getCol(), l.getRow(), Color.getHSBColor(0.50f, planktonFloat, 1f));
-	            }
-            }
-        }        
+        painter.paint(ocean, stats);
         stats.countFinished();
 
         population.setText(POPULATION_PREFIX + stats.getPopulationDetails(ocean));
         oceanView.repaint();
     }
 
+    /**
+     * Note that a step has not been shown, so the statistics
+     * must be counted afresh when they are next needed.
+     */
+    public void statusSkipped()
+    {
+        stats.reset();
+    }
+
     /**
      * Determine whether the simulation should continue to run.
      * @return true If there is more than one species alive.
@@ -175,18 +161,10 @@ public class SimulatorView extends JFrame
                 {
                     yScale = GRID_VIEW_SCALING_FACTOR;
                 }
+                painter.setTarget(g, xScale, yScale);
             }
         }
         
-        /**
-         * Paint on grid location on this ocean in a given color.
-         */
-        public void drawMark(int x, int y, Color color)
-        {
-            g.setColor(color);
-            g.fillRect(x * xScale, y * yScale, xScale-1, yScale-1);
-        }
-
         /**
          * The ocean view component needs to be redisplayed. Copy the
          * internal image to screen.
@@ -0,0 +1,180 @@
+/**
+ * Shows steps on a thread of its own while the following steps are computed, so a step only has to wait for copying,
+ * not for counting and painting. Each step's ocean is copied into one of a ring of snapshots once the step is finished,
+ * and the snapshots are handed to a consumer in order. If the consumer falls behind and every snapshot is waiting to be consumed,
+ * the stepping thread waits for one to be free, so the consumer is never more than the ring behind.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class SnapshotPipeline
+{
+	/**
+	 * Consumes the snapshots of steps, on the pipeline's thread.
+	 */
+	public interface Consumer
+	{
+		/**
+		 * Consumes the snapshot of a step. The snapshot must not be kept once this returns.
+		 * @param step The step the snapshot was taken after.
+		 * @param snapshot The ocean as it was after the step.
+		 * @param render True if the step should be shown.
+		 * @return True if the simulation is still viable.
+		 */
+		boolean consume(int step, Ocean snapshot, boolean render);
+	}
+
+	private Ocean snapshots[]; //The ring of snapshots, snapshot n is in slot n % snapshots.length
+	private int steps[]; //The step each slot was taken after
+	private boolean renders[]; //Whether each slot should be shown
+	private long published; //The number of snapshots handed to the consumer
+	private long consumed; //The number of snapshots the consumer has finished with
+	private boolean finished; //Set once no more snapshots will be published
+	private volatile boolean viable = true; //What the consumer last said of the simulation
+	private long waits; //The number of times the stepping thread waited for a free snapshot
+	private Consumer consumer;
+	private Thread thread;
+	private Throwable failure; //What stopped the consumer, null unless it failed
+
+	/**
+	 * Create a pipeline and start its thread.
+	 * @param depth The number of snapshots in the ring, at least 1.
+	 * @param type The type of the snapshots, see OceanType.getSnapshotType, so that a snapshot takes no more memory than the ocean it copies.
+	 * @param height The height of the oceans to copy.
+	 * @param width The width of the oceans to copy.
+	 * @param consumer What the snapshots are handed to.
+	 */
+	public SnapshotPipeline(int depth, OceanType type, int height, int width, Consumer consumer)
+	{
+		depth = Math.max(1, depth);
+		snapshots = new Ocean[depth];
+		for(int s = 0; s < depth; s++)
+		{
+			snapshots[s] = type.createOcean(height, width);
+		}
+		steps = new int[depth];
+		renders = new boolean[depth];
+		this.consumer = consumer;
+		thread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				consumeAll();
+			}
+		}, "snapshot-consumer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Copies an ocean into the next snapshot and hands it to the consumer, first waiting for a free snapshot if there is none.
+	 * @param step The step the ocean is as it was after.
+	 * @param ocean The ocean, which is not changed.
+	 * @param render True if the step should be shown.
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	public void publish(int step, Ocean ocean, boolean render) throws InterruptedException
+	{
+		synchronized(this)
+		{
+			if(published - consumed == snapshots.length) waits++;
+			while(published - consumed == snapshots.length && failure == null)
+			{
+				wait();
+			}
+			checkFailure();
+		}
+		//The slot is free and the consumer will not look at it until it is published
+		int slot = (int) (published % snapshots.length);
+		ocean.copyTo(snapshots[slot]);
+		steps[slot] = step;
+		renders[slot] = render;
+		synchronized(this)
+		{
+			published++;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Waits for every snapshot published to be consumed, then stops the pipeline's thread. Nothing may be published after this.
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	public void finish() throws InterruptedException
+	{
+		synchronized(this)
+		{
+			finished = true;
+			notifyAll();
+		}
+		thread.join();
+		synchronized(this)
+		{
+			checkFailure();
+		}
+	}
+
+	/**
+	 * @return False once the consumer has found the simulation no longer viable. Lags the steps by up to the depth of the ring.
+	 */
+	public boolean isViable()
+	{
+		return viable;
+	}
+
+	/**
+	 * @return The number of times publishing had to wait for the consumer to free a snapshot.
+	 */
+	public synchronized long getWaits()
+	{
+		return waits;
+	}
+
+	/**
+	 * Hands snapshots to the consumer in order until the pipeline is finished and every snapshot is consumed.
+	 */
+	private void consumeAll()
+	{
+		try
+		{
+			while(true)
+			{
+				synchronized(this)
+				{
+					while(consumed == published && !finished)
+					{
+						wait();
+					}
+					if(consumed == published) return;
+				}
+				int slot = (int) (consumed % snapshots.length);
+				if(!consumer.consume(steps[slot], snapshots[slot], renders[slot])) viable = false;
+				synchronized(this)
+				{
+					consumed++;
+					notifyAll();
+				}
+			}
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch(RuntimeException | Error e)
+		{
+			synchronized(this)
+			{
+				failure = e;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Throws on the stepping thread whatever stopped the consumer.
+	 */
+	private void checkFailure()
+	{
+		if(failure != null) throw new RuntimeException("Snapshot consumer failed", failure);
+	}
+}
@@ -0,0 +1,153 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A shard transport using sockets on the loopback interface.
+ * Shards are laid out in a line, so each shard is connected only to the shards either side of it.
+ * Shard n listens on the nth of a list of ports, chosen free by whoever starts the shards, and the shard after it connects there.
+ * Incoming messages are read on a separate thread so two shards sending to each other at once cannot block.
+ * @author Matthew Maglennon
+ *
+ */
+
+public class SocketShardTransport implements ShardTransport
+{
+	private static final int CONNECT_ATTEMPTS = 200; //Neighbouring workers may still be starting up
+	private static final int CONNECT_RETRY_MS = 50;
+
+	private Map<Integer, DataOutputStream> outputs = new HashMap<Integer, DataOutputStream>(); //Streams to each neighbouring shard
+	private Map<Integer, BlockingQueue<byte[]>> inboxes = new HashMap<Integer, BlockingQueue<byte[]>>(); //Messages received from each neighbouring shard
+	private Map<Integer, Socket> sockets = new HashMap<Integer, Socket>();
+
+	/**
+	 * Connects this shard to its neighbours, blocking until both connections are made.
+	 * @param shard The index of this shard.
+	 * @param shardCount The number of shards.
+	 * @param ports The port each shard but the last listens on.
+	 * @throws IOException If a connection cannot be made.
+	 */
+	public SocketShardTransport(int shard, int shardCount, int ports[]) throws IOException
+	{
+		if(ports.length < shardCount - 1)
+			throw new IllegalArgumentException(shardCount + " shards need " + (shardCount - 1) + " ports, not " + ports.length);
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		ServerSocket server = null;
+		if(shard < shardCount - 1)
+		{
+			server = new ServerSocket(ports[shard], 1, loopback);
+		}
+		if(shard > 0)
+		{
+			register(shard - 1, connect(loopback, ports[shard - 1]));
+		}
+		if(server != null)
+		{
+			register(shard + 1, server.accept());
+			server.close();
+		}
+	}
+
+	public void send(int toShard, byte[] message) throws IOException
+	{
+		DataOutputStream out = outputs.get(toShard);
+		out.writeInt(message.length);
+		out.write(message);
+		out.flush();
+	}
+
+	public byte[] receive(int fromShard) throws IOException
+	{
+		try
+		{
+			byte[] message = inboxes.get(fromShard).take();
+			if(message.length == 0) throw new EOFException("Shard " + fromShard + " disconnected");
+			return message;
+		}
+		catch(InterruptedException e)
+		{
+			throw new InterruptedIOException();
+		}
+	}
+
+	public void close() throws IOException
+	{
+		for(Socket socket : sockets.values())
+		{
+			socket.close();
+		}
+	}
+
+	/**
+	 * Connects to a neighbouring shard, retrying until it is listening.
+	 */
+	private Socket connect(InetAddress address, int port) throws IOException
+	{
+		for(int attempt = 1; ; attempt++)
+		{
+			try
+			{
+				return new Socket(address, port);
+			}
+			catch(ConnectException e)
+			{
+				if(attempt == CONNECT_ATTEMPTS) throw e;
+				try
+				{
+					Thread.sleep(CONNECT_RETRY_MS);
+				}
+				catch(InterruptedException ie)
+				{
+					throw new InterruptedIOException();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets up the streams for a connection and starts a thread to read from it.
+	 * An empty message is queued when the connection ends.
+	 */
+	private void register(int neighbour, Socket socket) throws IOException
+	{
+		socket.setTcpNoDelay(true);
+		sockets.put(neighbour, socket);
+		outputs.put(neighbour, new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+		final BlockingQueue<byte[]> inbox = new LinkedBlockingQueue<byte[]>();
+		inboxes.put(neighbour, inbox);
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		Thread reader = new Thread("shard-reader-" + neighbour)
+		{
+			public void run()
+			{
+				try
+				{
+					while(true)
+					{
+						byte[] message = new byte[in.readInt()];
+						in.readFully(message);
+						inbox.add(message);
+					}
+				}
+				catch(IOException e)
+				{
+					inbox.add(new byte[0]);
+				}
+			}
+		};
+		reader.setDaemon(true);
+		reader.start();
+	}
+}
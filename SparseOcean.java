@@ -0,0 +1,258 @@
+import java.util.Arrays;
+
+/**
+ * An ocean for very large, mostly empty worlds.
+ * The ocean is divided into square chunks which are only allocated once something is written to them.
+ * Untouched chunks all share one default chunk with no fish or rocks, whose plankton starts at INITIAL_PLANKTON and regenerates
+ * as that of every square of any other ocean does, so that an untouched square holds what it would in any other ocean.
+ * Once that plankton is full, chunks that go back to that state are evicted, so memory scales with the inhabited area rather than the world area.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class SparseOcean extends Ocean
+{
+	public static final int DEFAULT_CHUNK_SHIFT = 3; //Chunks are 8 by 8 squares by default
+
+	private int chunkShift; //Chunks are 2^chunkShift squares high and wide
+	private int chunkMask; //Mask giving the position of a square within its chunk
+	private int chunkCols; //The number of chunks across the ocean
+	private Chunk chunks[]; //The chunk covering each part of the ocean, row by row
+	private Chunk defaultChunk; //Shared by every chunk that has not been written to
+	private int allocatedChunks = 0; //The number of chunks not currently sharing the default
+
+	/**
+	 * Construct a sparse ocean of a given height and width with the default chunk size.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 */
+	public SparseOcean(int height, int width)
+	{
+		this(height, width, DEFAULT_CHUNK_SHIFT);
+	}
+
+	/**
+	 * Construct a sparse ocean of a given height and width.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 * @param chunkShift Chunks will be 2^chunkShift squares high and wide.
+	 */
+	public SparseOcean(int height, int width, int chunkShift)
+	{
+		super(height, width, false);
+		this.chunkShift = chunkShift;
+		this.chunkMask = (1 << chunkShift) - 1;
+		int chunkRows = (height + chunkMask) >> chunkShift;
+		chunkCols = (width + chunkMask) >> chunkShift;
+		defaultChunk = new Chunk(1 << (chunkShift * 2), INITIAL_PLANKTON);
+		chunks = new Chunk[chunkRows * chunkCols];
+		Arrays.fill(chunks, defaultChunk);
+	}
+
+	/**
+	 * Regenerates the plankton of the default chunk and of every allocated chunk, evicting any that have become idle.
+	 * Every untouched square has the plankton of the default chunk, so the total is that of an ocean of untouched squares
+	 * less what allocated chunks are short of it.
+	 */
+	public void regeneratePlankton()
+	{
+		float untouched = regenerate(defaultChunk.plankton[0]);
+		Arrays.fill(defaultChunk.plankton, untouched);
+		double shortfall = 0;
+		for(int c = 0; c < chunks.length; c++)
+		{
+			Chunk chunk = chunks[c];
+			if(chunk != defaultChunk)
+			{
+				double chunkShortfall = 0;
+				for(int i = 0; i < chunk.plankton.length; i++)
+				{
+					chunk.plankton[i] = regenerate(chunk.plankton[i]);
+					chunkShortfall += (double) untouched - chunk.plankton[i];
+				}
+				if(isSaturated(chunk)) evictIfIdle(c);
+				if(chunks[c] == chunk) shortfall += chunkShortfall; //an evicted chunk is back to the default plankton
+			}
+		}
+		setTotalPlankton((double) untouched * getHeight() * getWidth() - shortfall);
+	}
+
+	/**
+	 * Removes all fish from every allocated chunk, evicting any that have become idle.
+	 */
+	public void clearFish()
+	{
+		for(int c = 0; c < chunks.length; c++)
+		{
+			Chunk chunk = chunks[c];
+			if(chunk != defaultChunk)
+			{
+				Arrays.fill(chunk.fish, null);
+				chunk.fishCount = 0;
+				if(isSaturated(chunk)) evictIfIdle(c);
+			}
+		}
+		if(getSharkRepulsion() != null) getSharkRepulsion().clear();
+	}
+
+	/**
+	 * @return The number of chunks currently allocated.
+	 */
+	public int getAllocatedChunks()
+	{
+		return allocatedChunks;
+	}
+
+	/**
+	 * @return The total number of chunks covering the ocean.
+	 */
+	public int getChunkCount()
+	{
+		return chunks.length;
+	}
+
+	protected Fish fishAt(int row, int col)
+	{
+		return chunks[chunkIndex(row, col)].fish[squareIndex(row, col)];
+	}
+
+	protected void setFishAt(int row, int col, Fish fish)
+	{
+		int c = chunkIndex(row, col);
+		Chunk chunk = chunks[c];
+		if(chunk == defaultChunk)
+		{
+			if(fish == null) return;
+			chunk = allocate(c);
+		}
+		int i = squareIndex(row, col);
+		if(chunk.fish[i] == null && fish != null) chunk.fishCount++;
+		else if(chunk.fish[i] != null && fish == null) chunk.fishCount--;
+		chunk.fish[i] = fish;
+	}
+
+	protected boolean rockAt(int row, int col)
+	{
+		Chunk chunk = chunks[chunkIndex(row, col)];
+		return chunk.rocks != null && chunk.rocks[squareIndex(row, col)];
+	}
+
+	protected void setRockAt(int row, int col, boolean rock)
+	{
+		int c = chunkIndex(row, col);
+		Chunk chunk = chunks[c];
+		if(chunk == defaultChunk)
+		{
+			if(!rock) return;
+			chunk = allocate(c);
+		}
+		if(chunk.rocks == null)
+		{
+			if(!rock) return;
+			chunk.rocks = new boolean[chunk.plankton.length];
+		}
+		int i = squareIndex(row, col);
+		if(!chunk.rocks[i] && rock) chunk.rockCount++;
+		else if(chunk.rocks[i] && !rock) chunk.rockCount--;
+		chunk.rocks[i] = rock;
+	}
+
+	protected float planktonAt(int row, int col)
+	{
+		return chunks[chunkIndex(row, col)].plankton[squareIndex(row, col)];
+	}
+
+	protected void setPlanktonAt(int row, int col, float plankton)
+	{
+		int c = chunkIndex(row, col);
+		Chunk chunk = chunks[c];
+		if(chunk == defaultChunk)
+		{
+			if(plankton == defaultChunk.plankton[squareIndex(row, col)]) return;
+			chunk = allocate(c);
+		}
+		chunk.plankton[squareIndex(row, col)] = plankton;
+	}
+
+	/**
+	 * @return The index in the chunks array of the chunk holding the given square.
+	 */
+	private int chunkIndex(int row, int col)
+	{
+		return (row >> chunkShift) * chunkCols + (col >> chunkShift);
+	}
+
+	/**
+	 * @return The index of the given square within its chunk.
+	 */
+	private int squareIndex(int row, int col)
+	{
+		return ((row & chunkMask) << chunkShift) | (col & chunkMask);
+	}
+
+	/**
+	 * Replaces the default chunk at the given index with a newly allocated one, with the plankton of the default chunk.
+	 * @param c Index of the chunk.
+	 * @return The new chunk.
+	 */
+	private Chunk allocate(int c)
+	{
+		Chunk chunk = new Chunk(defaultChunk.plankton.length, defaultChunk.plankton[0]);
+		chunks[c] = chunk;
+		allocatedChunks++;
+		return chunk;
+	}
+
+	/**
+	 * Returns a chunk to the default if it holds no fish or rocks. Its plankton must already be full, see isSaturated.
+	 * Squares regenerated just past full plankton are back to the default plankton, and what they lose is taken off the total plankton.
+	 * @param c Index of the chunk.
+	 */
+	private void evictIfIdle(int c)
+	{
+		Chunk chunk = chunks[c];
+		if(chunk.fishCount == 0 && chunk.rockCount == 0)
+		{
+			float excess = 0;
+			for(float plankton : chunk.plankton)
+			{
+				excess += plankton - defaultChunk.plankton[0];
+			}
+			planktonGrazed(excess);
+			chunks[c] = defaultChunk;
+			allocatedChunks--;
+		}
+	}
+
+	/**
+	 * @return True if every square of the chunk and of the default chunk has full plankton.
+	 */
+	private boolean isSaturated(Chunk chunk)
+	{
+		if(defaultChunk.plankton[0] < MAX_PLANKTON) return false;
+		for(float plankton : chunk.plankton)
+		{
+			if(plankton < MAX_PLANKTON) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * The layers of one chunk of the ocean. Rocks are rare so their layer is only allocated when needed.
+	 */
+	private static class Chunk
+	{
+		private Fish fish[];
+		private float plankton[];
+		private boolean rocks[];
+		private int fishCount = 0;
+		private int rockCount = 0;
+
+		private Chunk(int squares, float planktonLevel)
+		{
+			fish = new Fish[squares];
+			plankton = new float[squares];
+			Arrays.fill(plankton, planktonLevel);
+		}
+	}
+}
@@ -0,0 +1,204 @@
+import java.util.Arrays;
+
+/**
+ * An index of where fish are, for fish that can sense further than their adjacent squares.
+ * The ocean is divided into square buckets, each holding the fish inside it.
+ * A query only looks at the buckets overlapping its radius, so it takes time in proportion to the fish nearby rather than the squares.
+ * The index is kept up to date as fish are added, move and are removed, and is shared by the current and updated oceans.
+ * Dead fish may remain in the index until they are removed, but queries ignore them.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class SpatialIndex
+{
+	public static final int DEFAULT_BUCKET_SHIFT = 3; //Buckets are 8 by 8 squares by default
+
+	private int height; //Height of the ocean
+	private int width; //Width of the ocean
+	private int bucketShift; //Buckets are 2^bucketShift squares high and wide
+	private int bucketCols; //The number of buckets across the ocean
+	private Fish buckets[][]; //The fish in each bucket, row by row
+	private int bucketSizes[]; //The number of fish in each bucket
+
+	/**
+	 * Create an empty index for an ocean with the default bucket size.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 */
+	public SpatialIndex(int height, int width)
+	{
+		this(height, width, DEFAULT_BUCKET_SHIFT);
+	}
+
+	/**
+	 * Create an empty index for an ocean.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 * @param bucketShift Buckets will be 2^bucketShift squares high and wide.
+	 */
+	public SpatialIndex(int height, int width, int bucketShift)
+	{
+		this.height = height;
+		this.width = width;
+		this.bucketShift = bucketShift;
+		int bucketRows = ((height - 1) >> bucketShift) + 1;
+		bucketCols = ((width - 1) >> bucketShift) + 1;
+		buckets = new Fish[bucketRows * bucketCols][];
+		bucketSizes = new int[bucketRows * bucketCols];
+	}
+
+	/**
+	 * Adds a fish at its current location.
+	 * @param fish The fish to add.
+	 */
+	public void add(Fish fish)
+	{
+		add(fish, bucketOf(fish.getLocation()));
+	}
+
+	/**
+	 * Removes a fish from the index, it must be at the location it was last added or moved to.
+	 * @param fish The fish to remove.
+	 */
+	public void remove(Fish fish)
+	{
+		remove(fish, bucketOf(fish.getLocation()));
+	}
+
+	/**
+	 * Records that a fish has moved.
+	 * @param fish The fish that moved.
+	 * @param from Its previous location.
+	 * @param to Its new location.
+	 */
+	public void move(Fish fish, Location from, Location to)
+	{
+		int fromBucket = bucketOf(from);
+		int toBucket = bucketOf(to);
+		if(fromBucket != toBucket)
+		{
+			remove(fish, fromBucket);
+			add(fish, toBucket);
+		}
+	}
+
+	/**
+	 * Finds the nearest living fish of the given species, counting diagonal steps as 1.
+	 * @param location The location to search around, fish at this location are ignored.
+	 * @param radius The furthest distance to search.
+	 * @param speciesMask Species.getMask() of each species to look for, or'ed together.
+	 * @return The nearest such fish, or null if there is none within the radius.
+	 */
+	public Fish nearest(Location location, int radius, int speciesMask)
+	{
+		int row = location.getRow();
+		int col = location.getCol();
+		Fish nearest = null;
+		int nearestDistance = radius + 1;
+		int lastBucketRow = Math.min(height - 1, row + radius) >> bucketShift;
+		int lastBucketCol = Math.min(width - 1, col + radius) >> bucketShift;
+		for(int bucketRow = Math.max(0, row - radius) >> bucketShift; bucketRow <= lastBucketRow; bucketRow++)
+		{
+			for(int bucketCol = Math.max(0, col - radius) >> bucketShift; bucketCol <= lastBucketCol; bucketCol++)
+			{
+				int bucket = bucketRow * bucketCols + bucketCol;
+				for(int f = 0; f < bucketSizes[bucket]; f++)
+				{
+					Fish fish = buckets[bucket][f];
+					if((fish.getSpecies().getMask() & speciesMask) != 0 && fish.isAlive())
+					{
+						int distance = distance(row, col, fish.getLocation());
+						if(distance > 0 && distance < nearestDistance)
+						{
+							nearest = fish;
+							nearestDistance = distance;
+						}
+					}
+				}
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * Counts the living fish of the given species within a radius, counting diagonal steps as 1.
+	 * @param location The location to search around, fish at this location are not counted.
+	 * @param radius The furthest distance to search.
+	 * @param speciesMask Species.getMask() of each species to count, or'ed together.
+	 * @return The number of such fish.
+	 */
+	public int countWithin(Location location, int radius, int speciesMask)
+	{
+		int row = location.getRow();
+		int col = location.getCol();
+		int count = 0;
+		int lastBucketRow = Math.min(height - 1, row + radius) >> bucketShift;
+		int lastBucketCol = Math.min(width - 1, col + radius) >> bucketShift;
+		for(int bucketRow = Math.max(0, row - radius) >> bucketShift; bucketRow <= lastBucketRow; bucketRow++)
+		{
+			for(int bucketCol = Math.max(0, col - radius) >> bucketShift; bucketCol <= lastBucketCol; bucketCol++)
+			{
+				int bucket = bucketRow * bucketCols + bucketCol;
+				for(int f = 0; f < bucketSizes[bucket]; f++)
+				{
+					Fish fish = buckets[bucket][f];
+					if((fish.getSpecies().getMask() & speciesMask) != 0 && fish.isAlive())
+					{
+						int distance = distance(row, col, fish.getLocation());
+						if(distance > 0 && distance <= radius) count++;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return The number of steps between a square and a location, counting diagonal steps as 1.
+	 */
+	private static int distance(int row, int col, Location location)
+	{
+		return Math.max(Math.abs(location.getRow() - row), Math.abs(location.getCol() - col));
+	}
+
+	private int bucketOf(Location location)
+	{
+		return (location.getRow() >> bucketShift) * bucketCols + (location.getCol() >> bucketShift);
+	}
+
+	private void add(Fish fish, int bucket)
+	{
+		Fish contents[] = buckets[bucket];
+		if(contents == null)
+		{
+			contents = new Fish[4];
+			buckets[bucket] = contents;
+		}
+		else if(bucketSizes[bucket] == contents.length)
+		{
+			contents = Arrays.copyOf(contents, contents.length * 2);
+			buckets[bucket] = contents;
+		}
+		contents[bucketSizes[bucket]++] = fish;
+	}
+
+	/**
+	 * Removes a fish from a bucket by moving the last fish in the bucket into its place.
+	 */
+	private void remove(Fish fish, int bucket)
+	{
+		Fish contents[] = buckets[bucket];
+		int last = bucketSizes[bucket] - 1;
+		for(int f = last; f >= 0; f--)
+		{
+			if(contents[f] == fish)
+			{
+				contents[f] = contents[last];
+				contents[last] = null;
+				bucketSizes[bucket] = last;
+				return;
+			}
+		}
+	}
+}
@@ -0,0 +1,78 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Puts actors in the order of their locations along a Morton curve, so that actors acting one after another are near each other
+ * and the squares each looks at are likely to be in the cache already. Newborn actors are appended wherever they are born,
+ * so without reordering the actor list soon jumps about the whole ocean.
+ *
+ * The curve runs through blocks of squares rather than single squares, and the actors within a block are put in a random order,
+ * so that no direction is always taken first when fish compete for the same squares.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class SpatialOrder
+{
+	public static final int BLOCK_SHIFT = 3; //Blocks are 2^BLOCK_SHIFT squares high and wide
+
+	/**
+	 * Reorders actors along the curve, in a random order within each block.
+	 * @param actors The actors, of an ocean less than 2^(15 + BLOCK_SHIFT) squares high and wide.
+	 * @param rand The random object to order the actors within a block by.
+	 */
+	public static void sort(List<Actor> actors, Random rand)
+	{
+		int count = actors.size();
+		Actor unsorted[] = actors.toArray(new Actor[count]);
+		//The block's place on the curve in the high half of each key and the actor's index in the low half, so sorting the keys sorts the actors
+		long keys[] = new long[count];
+		for(int a = 0; a < count; a++)
+		{
+			Location location = unsorted[a].getLocation();
+			keys[a] = (long) morton(location.getRow() >> BLOCK_SHIFT, location.getCol() >> BLOCK_SHIFT) << 32 | a;
+		}
+		Arrays.sort(keys);
+
+		int runStart = 0;
+		for(int a = 1; a <= count; a++)
+		{
+			if(a < count && keys[a] >>> 32 == keys[runStart] >>> 32) continue;
+			//Shuffle the actors of the block that ends here
+			for(int i = a - 1; i > runStart; i--)
+			{
+				int j = runStart + rand.nextInt(i - runStart + 1);
+				long swap = keys[i];
+				keys[i] = keys[j];
+				keys[j] = swap;
+			}
+			runStart = a;
+		}
+		for(int a = 0; a < count; a++)
+		{
+			actors.set(a, unsorted[(int) keys[a]]);
+		}
+	}
+
+	/**
+	 * @return The place of a row and column on the Morton curve, the bits of the row and column interleaved.
+	 */
+	private static int morton(int row, int col)
+	{
+		return spread(row) << 1 | spread(col);
+	}
+
+	/**
+	 * @return The low 16 bits of a value spread out to the even bits.
+	 */
+	private static int spread(int value)
+	{
+		value &= 0xFFFF;
+		value = (value | (value << 8)) & 0x00FF00FF;
+		value = (value | (value << 4)) & 0x0F0F0F0F;
+		value = (value | (value << 2)) & 0x33333333;
+		value = (value | (value << 1)) & 0x55555555;
+		return value;
+	}
+}
@@ -0,0 +1,98 @@
+import java.util.Random;
+
+/**
+ * Enum for the species of fish, used wherever a fish has to be stored as a number rather than an object.
+ * Code 0 is reserved for no fish.
+ * @author Matthew Maglennon
+ *
+ */
+
+public enum Species
+{
+	SHARK
+	{
+		public Fish createFish()
+		{
+			return new Shark();
+		}
+
+		public Fish createFish(Random rand, Location location)
+		{
+			return new Shark(rand, location);
+		}
+	},
+	HERRING
+	{
+		public Fish createFish()
+		{
+			return new Herring();
+		}
+
+		public Fish createFish(Random rand, Location location)
+		{
+			return new Herring(rand, location);
+		}
+	},
+	GROPER
+	{
+		public Fish createFish()
+		{
+			return new Groper();
+		}
+
+		public Fish createFish(Random rand, Location location)
+		{
+			return new Groper(rand, location);
+		}
+	};
+
+	public static final byte NONE = 0; //The code stored where there is no fish
+	private static final Species[] values = values();
+
+	/**
+	 * @return A new fish of this species with no age, location or maximum age, see Fish.setRandomMaxAge.
+	 */
+	public abstract Fish createFish();
+
+	/**
+	 * @param rand The random object to draw the fish's age from, see Fish.
+	 * @param location The location of the new fish.
+	 * @return A new fish of this species at a random age.
+	 */
+	public abstract Fish createFish(Random rand, Location location);
+
+	/**
+	 * @return The code used to store this species, from 1 upwards.
+	 */
+	public byte getCode()
+	{
+		return (byte) (ordinal() + 1);
+	}
+
+	/**
+	 * @return A bit identifying this species, species can be combined into a mask with |.
+	 */
+	public int getMask()
+	{
+		return 1 << getCode();
+	}
+
+	/**
+	 * @param fish A fish, may be null.
+	 * @return The code for the species of the fish, or NONE if there is no fish.
+	 */
+	public static byte codeOf(Fish fish)
+	{
+		if(fish == null) return NONE;
+		else return fish.getSpecies().getCode();
+	}
+
+	/**
+	 * @param code A species code other than NONE.
+	 * @return The species stored as the given code.
+	 */
+	public static Species fromCode(byte code)
+	{
+		return values[code - 1];
+	}
+}
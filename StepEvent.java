@@ -0,0 +1,35 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event covering one whole step of the simulation, from the first phase to the last.
+ * See StepPhaseEvent for where the time of the step goes.
+ *
+ * @author Matthew Maglennon
+ */
+
+@Name("fishsim.Step")
+@Label("Step")
+@Category("Fish Simulator")
+@Description("One step of the simulation")
+@StackTrace(false)
+public class StepEvent extends jdk.jfr.Event
+{
+	@Label("Step")
+	int step;
+
+	@Label("Actors")
+	@Description("Actors in the list at the end of the step")
+	int actors;
+
+	@Label("Births")
+	@Description("Actors born during the step")
+	int births;
+
+	@Label("Deaths")
+	@Description("Dead actors removed from the list during the step, each counted once, in the step it died or the step after")
+	int deaths;
+}
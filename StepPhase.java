@@ -0,0 +1,34 @@
+/**
+ * The phases of a step of the simulation, in the order they run. Each is timed by a StepPhaseEvent,
+ * and the bytes each allocates are counted by SimulationMetrics.
+ * @author Matthew Maglennon
+ *
+ */
+
+public enum StepPhase
+{
+	LIFE_CYCLE("life cycle"),
+	PREY_FIELDS("prey fields"),
+	ACT("act"),
+	PLANKTON_TRANSPORT("plankton transport"),
+	PLANKTON_REGENERATION("plankton regeneration"),
+	SWAP_AND_CLEAR("swap and clear"),
+	SNAPSHOT("snapshot"),
+	STATS("stats"),
+	RENDER("render");
+
+	private String label; //The name of the phase as it is shown in recordings and metrics
+
+	private StepPhase(String label)
+	{
+		this.label = label;
+	}
+
+	/**
+	 * @return The name of the phase as it is shown in recordings and metrics.
+	 */
+	public String getLabel()
+	{
+		return label;
+	}
+}
@@ -0,0 +1,38 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event covering one phase of a step, such as the actors acting or the plankton regenerating.
+ * The phases of a step follow one another, so a recording shows exactly where the time of each step goes.
+ *
+ * @author Matthew Maglennon
+ */
+
+@Name("fishsim.StepPhase")
+@Label("Step Phase")
+@Category("Fish Simulator")
+@Description("One phase of a step of the simulation")
+@StackTrace(false)
+public class StepPhaseEvent extends jdk.jfr.Event
+{
+	@Label("Step")
+	int step;
+
+	@Label("Phase")
+	String phase;
+
+	/**
+	 * Create the event for a phase, and start timing it.
+	 * @param step The step the phase is part of.
+	 * @param phase The phase.
+	 */
+	public StepPhaseEvent(int step, StepPhase phase)
+	{
+		this.step = step;
+		this.phase = phase.getLabel();
+		begin();
+	}
+}
@@ -0,0 +1,197 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces the steps of a simulation and decides which steps are shown.
+ * The time a step takes to compute and show is taken off the wait before the next one,
+ * so steps start at a fixed rate rather than drifting with the load.
+ * Keeps statistics of how long each step really took from start to start, so the jitter against the target can be watched.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class StepScheduler
+{
+	/**
+	 * How steps are paced.
+	 */
+	public enum Mode
+	{
+		FIXED_RATE, //Steps start once per period and every step is shown
+		TURBO, //Steps run as fast as possible and are shown at most TURBO_RENDER_PERIOD apart
+		BUDGET //Steps start once per period, and fewer steps are shown while steps take longer than the period
+	}
+
+	public static final long TURBO_RENDER_PERIOD = 40000000L; //The shortest time between steps shown in turbo mode, in nanoseconds
+	public static final int MAX_RENDER_INTERVAL = 64; //The most steps a budget can go without showing one
+
+	private Mode mode;
+	private long period; //The target time from the start of one step to the start of the next, in nanoseconds
+	private long nextStart; //When the next step should start
+	private long stepStart; //When the current step started
+	private long lastRender; //When a step was last shown
+	private int renderInterval; //In budget mode, one step in this many is shown
+	private int stepsSinceRender; //Steps that have not been shown since the last that was
+
+	//Statistics of the time from the start of one step to the start of the next
+	private long steps;
+	private double meanPeriod;
+	private double sumSquaredDeviation; //Sum of squared differences from the mean, for the variance
+	private long longestPeriod;
+	private long lateSteps; //Steps that finished more than a whole period late
+
+	/**
+	 * Create a scheduler.
+	 * @param mode How steps are paced.
+	 * @param periodMillis The target time between the starts of steps in milliseconds, ignored in turbo mode.
+	 */
+	public StepScheduler(Mode mode, long periodMillis)
+	{
+		this.mode = mode;
+		period = mode == Mode.TURBO ? 0 : TimeUnit.MILLISECONDS.toNanos(periodMillis);
+		renderInterval = 1;
+	}
+
+	/**
+	 * Starts timing the first step, to be called just before it.
+	 */
+	public void start()
+	{
+		stepStart = System.nanoTime();
+		nextStart = stepStart;
+		lastRender = stepStart - TURBO_RENDER_PERIOD;
+	}
+
+	/**
+	 * Decides whether the current step should be shown, to be called once per step after it has been computed.
+	 * @return True if the step should be shown.
+	 */
+	public boolean shouldRender()
+	{
+		boolean render;
+		if(mode == Mode.TURBO) render = System.nanoTime() - lastRender >= TURBO_RENDER_PERIOD;
+		else if(mode == Mode.BUDGET) render = stepsSinceRender + 1 >= renderInterval;
+		else render = true;
+
+		if(render)
+		{
+			lastRender = System.nanoTime();
+			stepsSinceRender = 0;
+		}
+		else stepsSinceRender++;
+		return render;
+	}
+
+	/**
+	 * Waits until the next step should start, to be called at the end of each step.
+	 * A step that finishes more than a whole period late does not make the following steps hurry to catch up.
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	public void endStep() throws InterruptedException
+	{
+		long now = System.nanoTime();
+		if(mode == Mode.BUDGET)
+		{
+			//Show half as many steps while steps run over budget, and twice as many once they are well within it
+			long work = now - stepStart;
+			if(work > period) renderInterval = Math.min(MAX_RENDER_INTERVAL, renderInterval * 2);
+			else if(work < period / 2) renderInterval = Math.max(1, renderInterval / 2);
+		}
+
+		if(period > 0)
+		{
+			nextStart += period;
+			if(now - nextStart > period)
+			{
+				lateSteps++;
+				nextStart = now;
+			}
+			else if(nextStart > now)
+			{
+				TimeUnit.NANOSECONDS.sleep(nextStart - now);
+			}
+		}
+
+		long start = System.nanoTime();
+		record(start - stepStart);
+		stepStart = start;
+	}
+
+	/**
+	 * Adds the time of a step to the statistics, keeping a running mean and variance.
+	 */
+	private void record(long stepPeriod)
+	{
+		steps++;
+		double deviation = stepPeriod - meanPeriod;
+		meanPeriod += deviation / steps;
+		sumSquaredDeviation += deviation * (stepPeriod - meanPeriod);
+		longestPeriod = Math.max(longestPeriod, stepPeriod);
+	}
+
+	/**
+	 * @return The number of steps that have ended.
+	 */
+	public long getSteps()
+	{
+		return steps;
+	}
+
+	/**
+	 * @return The mean time from the start of one step to the start of the next, in milliseconds.
+	 */
+	public double getMeanPeriodMillis()
+	{
+		return meanPeriod / 1000000;
+	}
+
+	/**
+	 * @return The standard deviation of the time from the start of one step to the start of the next, in milliseconds.
+	 */
+	public double getJitterMillis()
+	{
+		if(steps < 2) return 0;
+		return Math.sqrt(sumSquaredDeviation / (steps - 1)) / 1000000;
+	}
+
+	/**
+	 * @return The longest time from the start of one step to the start of the next, in milliseconds.
+	 */
+	public double getLongestPeriodMillis()
+	{
+		return longestPeriod / 1000000.0;
+	}
+
+	/**
+	 * @return The number of steps that finished more than a whole period late.
+	 */
+	public long getLateSteps()
+	{
+		return lateSteps;
+	}
+
+	/**
+	 * @return The mean number of steps per second.
+	 */
+	public double getStepsPerSecond()
+	{
+		if(meanPeriod == 0) return 0;
+		return 1000000000 / meanPeriod;
+	}
+
+	/**
+	 * @return In budget mode, one step in this many is currently shown.
+	 */
+	public int getRenderInterval()
+	{
+		return renderInterval;
+	}
+
+	/**
+	 * @return A summary of the step timing statistics.
+	 */
+	public String toString()
+	{
+		return String.format("%s: %d steps, %.1f steps/s, period %.2fms mean, %.2fms jitter, %.2fms longest, %d late",
+			mode, steps, getStepsPerSecond(), getMeanPeriodMillis(), getJitterMillis(), getLongestPeriodMillis(), lateSteps);
+	}
+}
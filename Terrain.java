@@ -0,0 +1,259 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import javax.imageio.ImageIO;
+
+/**
+ * The rocks of an ocean, such as coastlines and reefs, loaded from an image or a binary mask or built from rock patterns.
+ * One terrain is shared by the current and updated ocean, see Ocean.setTerrain.
+ * For each square the terrain keeps a mask of the neighbours that are inside the ocean and not rock, worked out when rocks are added,
+ * so finding the empty squares around a fish only has to look for other fish, however complicated the terrain.
+ *
+ * Mask file layout, all big endian: int magic, int height, int width,
+ * then a bit for each square, 1 for rock, row by row with the first square of the file in the lowest bit of the first byte.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class Terrain
+{
+	public static final int MAGIC = 0x524F434B; //"ROCK", marks a mask file
+	public static final int HEADER_SIZE = 12;
+	public static final float ROCK_BRIGHTNESS = 0.5f; //Pixels of an image darker than this are rock
+
+	private int height;
+	private int width;
+	private Bitboard rocks; //Which squares are rock
+	private byte passable[]; //For each square row by row, bit d is set if the neighbour in direction d is in the ocean and not rock
+
+	/**
+	 * Create terrain with no rocks.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 */
+	public Terrain(int height, int width)
+	{
+		this.height = height;
+		this.width = width;
+		rocks = new Bitboard(height, width);
+		passable = new byte[height * width];
+		computePassable();
+	}
+
+	/**
+	 * Loads terrain from a file, an image if its name ends in .png, .gif, .jpg or .bmp and otherwise a mask file.
+	 * The file is stretched to fit the ocean.
+	 * @param file The file.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 * @return The terrain.
+	 * @throws IOException If the file cannot be read or is not an image or mask.
+	 */
+	public static Terrain load(Path file, int height, int width) throws IOException
+	{
+		String name = file.getFileName().toString().toLowerCase();
+		if(name.endsWith(".png") || name.endsWith(".gif") || name.endsWith(".jpg") || name.endsWith(".bmp"))
+		{
+			BufferedImage image = ImageIO.read(file.toFile());
+			if(image == null) throw new IOException("Not an image: " + file);
+			return fromImage(image, height, width);
+		}
+		return readMask(file, height, width);
+	}
+
+	/**
+	 * Creates terrain from an image, dark pixels being rock. The image is stretched to fit the ocean, one pixel to a square.
+	 * @param image The image.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 * @return The terrain.
+	 */
+	public static Terrain fromImage(BufferedImage image, int height, int width)
+	{
+		Terrain terrain = new Terrain(height, width);
+		float hsb[] = new float[3];
+		for(int row = 0; row < height; row++)
+		{
+			int y = (int) ((long) row * image.getHeight() / height);
+			for(int col = 0; col < width; col++)
+			{
+				int rgb = image.getRGB((int) ((long) col * image.getWidth() / width), y);
+				Color.RGBtoHSB((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF, hsb);
+				if(hsb[2] < ROCK_BRIGHTNESS) terrain.rocks.set(row, col);
+			}
+		}
+		terrain.computePassable();
+		return terrain;
+	}
+
+	/**
+	 * Reads terrain from a mask file, stretched to fit the ocean.
+	 * @param file The mask file.
+	 * @param height Ocean height.
+	 * @param width Ocean width.
+	 * @return The terrain.
+	 * @throws IOException If the file cannot be read or is not a mask.
+	 */
+	public static Terrain readMask(Path file, int height, int width) throws IOException
+	{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try
+		{
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(channel, header);
+			header.flip();
+			if(header.getInt() != MAGIC) throw new IOException("Not a terrain mask: " + file);
+			int maskHeight = header.getInt();
+			int maskWidth = header.getInt();
+			ByteBuffer bits = ByteBuffer.allocate((int) (((long) maskHeight * maskWidth + 7) / 8));
+			readFully(channel, bits);
+
+			Terrain terrain = new Terrain(height, width);
+			for(int row = 0; row < height; row++)
+			{
+				long maskRow = (long) row * maskHeight / height;
+				for(int col = 0; col < width; col++)
+				{
+					long bit = maskRow * maskWidth + (long) col * maskWidth / width;
+					if((bits.get((int) (bit >> 3)) & (1 << (bit & 7))) != 0) terrain.rocks.set(row, col);
+				}
+			}
+			terrain.computePassable();
+			return terrain;
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes the terrain as a mask file, which is created or overwritten.
+	 * @param file The file.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void writeMask(Path file) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (int) (((long) height * width + 7) / 8));
+		buffer.putInt(MAGIC).putInt(height).putInt(width);
+		for(int row = 0; row < height; row++)
+		{
+			for(int col = 0; col < width; col++)
+			{
+				long bit = (long) row * width + col;
+				int i = HEADER_SIZE + (int) (bit >> 3);
+				if(rocks.get(row, col)) buffer.put(i, (byte) (buffer.get(i) | (1 << (bit & 7))));
+			}
+		}
+		buffer.rewind();
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+		try
+		{
+			while(buffer.hasRemaining())
+			{
+				channel.write(buffer);
+			}
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads from a channel until a buffer is full.
+	 * @throws IOException If the channel ends first.
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		while(buffer.hasRemaining())
+		{
+			if(channel.read(buffer) < 0) throw new IOException("Terrain mask ends early");
+		}
+	}
+
+	/**
+	 * Makes a square rock, updating what its neighbours can enter.
+	 * @param row The row of the square.
+	 * @param col The column of the square.
+	 */
+	public void addRock(int row, int col)
+	{
+		if(rocks.get(row, col)) return;
+		rocks.set(row, col);
+		for(int d = 0; d < 8; d++)
+		{
+			int r = row + Ocean.DIRECTION_ROW[d];
+			int c = col + Ocean.DIRECTION_COL[d];
+			//The rock is in the opposite direction, 7 - d, from the neighbour
+			if(r >= 0 && r < height && c >= 0 && c < width) passable[r * width + c] &= ~(1 << (7 - d));
+		}
+	}
+
+	/**
+	 * Makes every square of a rock pattern inside the ocean rock.
+	 * @param rockPattern The rock pattern.
+	 */
+	public void addRocks(RockPattern rockPattern)
+	{
+		for(Location location : rockPattern.getRockPattern())
+		{
+			int row = location.getRow();
+			int col = location.getCol();
+			if(row >= 0 && row < height && col >= 0 && col < width) addRock(row, col);
+		}
+	}
+
+	/**
+	 * Works out the passable neighbours of every square from scratch, after rocks have been set directly.
+	 */
+	private void computePassable()
+	{
+		Bitboard outside = Bitboard.outside(height, width);
+		for(int row = 0; row < height; row++)
+		{
+			for(int col = 0; col < width; col++)
+			{
+				passable[row * width + col] = (byte) ~(outside.neighbours(row, col) | rocks.neighbours(row, col));
+			}
+		}
+	}
+
+	/**
+	 * @return True if a square is rock.
+	 */
+	public boolean isRock(int row, int col)
+	{
+		return rocks.get(row, col);
+	}
+
+	/**
+	 * @return A mask with bit d set if the neighbour of a square in direction d is in the ocean and not rock.
+	 */
+	public int passableNeighbours(int row, int col)
+	{
+		return passable[row * width + col] & 0xFF;
+	}
+
+	/**
+	 * @return The rocks, for oceans to share rather than keep their own.
+	 */
+	public Bitboard getRocks()
+	{
+		return rocks;
+	}
+
+	public int getHeight()
+	{
+		return height;
+	}
+
+	public int getWidth()
+	{
+		return width;
+	}
+}
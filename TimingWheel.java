@@ -0,0 +1,121 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds items until the step they are due, so that each step only the items due in it are looked at.
+ * Items due within the next SLOTS steps wait in a slot of their own step. Items due further away wait in a coarser wheel
+ * with a slot for each run of SLOTS steps, and are moved down when their run begins. Items further away than the coarse wheel
+ * reaches wait in an overflow list, which is looked at once for every turn of the coarse wheel.
+ * Scheduling and delivering an item therefore takes about the same time however far away it is due.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class TimingWheel<T>
+{
+	public static final int SLOT_BITS = 8;
+	public static final int SLOTS = 1 << SLOT_BITS; //The slots of each wheel
+	private static final int MASK = SLOTS - 1;
+
+	private List<List<T>> fine; //Items due in each of the next SLOTS steps, by step modulo SLOTS
+	private List<List<Timer<T>>> coarse; //Items due in each of the next SLOTS runs of SLOTS steps, by run modulo SLOTS
+	private List<Timer<T>> overflow; //Items due further away than the coarse wheel reaches
+	private long step; //The step last advanced to
+
+	/**
+	 * Create an empty wheel at step 0.
+	 */
+	public TimingWheel()
+	{
+		fine = new ArrayList<List<T>>();
+		coarse = new ArrayList<List<Timer<T>>>();
+		for(int s = 0; s < SLOTS; s++)
+		{
+			fine.add(new ArrayList<T>());
+			coarse.add(new ArrayList<Timer<T>>());
+		}
+		overflow = new ArrayList<Timer<T>>();
+	}
+
+	/**
+	 * @return The step last advanced to, 0 before the first advance.
+	 */
+	public long getStep()
+	{
+		return step;
+	}
+
+	/**
+	 * Schedules an item to be delivered when the wheel advances to a step.
+	 * An item may be scheduled more than once, and is then delivered once for each time.
+	 * @param item The item.
+	 * @param due The step to deliver the item in. Steps that have been reached already are taken as the next step.
+	 */
+	public void schedule(T item, long due)
+	{
+		if(due <= step) due = step + 1;
+		if(due - step < SLOTS) fine.get((int) (due & MASK)).add(item);
+		else place(new Timer<T>(item, due));
+	}
+
+	/**
+	 * Advances to the next step.
+	 * @param due A list to add the items due in the step to.
+	 */
+	public void advance(List<T> due)
+	{
+		step++;
+		if((step & MASK) == 0)
+		{
+			//A new run of steps begins, so move its items down into the fine wheel, first fetching any that have come within reach
+			long run = step >> SLOT_BITS;
+			if((run & MASK) == 0)
+			{
+				List<Timer<T>> waiting = overflow;
+				overflow = new ArrayList<Timer<T>>();
+				for(Timer<T> timer : waiting)
+				{
+					place(timer);
+				}
+			}
+			List<Timer<T>> timers = coarse.get((int) (run & MASK));
+			for(Timer<T> timer : timers)
+			{
+				fine.get((int) (timer.due & MASK)).add(timer.item);
+			}
+			timers.clear();
+		}
+		List<T> slot = fine.get((int) (step & MASK));
+		for(int i = 0; i < slot.size(); i++) //rather than addAll, which copies the slot into a new array
+		{
+			due.add(slot.get(i));
+		}
+		slot.clear();
+	}
+
+	/**
+	 * Puts an item due at least SLOTS steps away, or due in the run of steps just begun, in the coarse wheel or the overflow list.
+	 */
+	private void place(Timer<T> timer)
+	{
+		long runs = (timer.due >> SLOT_BITS) - (step >> SLOT_BITS);
+		if(runs == 0) fine.get((int) (timer.due & MASK)).add(timer.item);
+		else if(runs < SLOTS) coarse.get((int) ((timer.due >> SLOT_BITS) & MASK)).add(timer);
+		else overflow.add(timer);
+	}
+
+	/**
+	 * An item waiting further away than the fine wheel reaches, with the step it is due.
+	 */
+	private static class Timer<T>
+	{
+		private T item;
+		private long due;
+
+		private Timer(T item, long due)
+		{
+			this.item = item;
+			this.due = due;
+		}
+	}
+}
@@ -0,0 +1,137 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The threads shared by every stage of the simulation that works on parts of the ocean in parallel.
+ * The threads are daemons, so they never keep the simulation running once it has finished.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class Workers
+{
+	private static ExecutorService pool; //Created when first needed
+	private static int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * @return The number of threads parallel stages should split their work between.
+	 */
+	public static int getThreads()
+	{
+		return threads;
+	}
+
+	/**
+	 * Sets how many threads parallel stages split their work between.
+	 * Stages split their work when they are created, so this should be done before creating them.
+	 * If the threads have already been started with a different count they are stopped, and new ones are started when next needed.
+	 * @param count The number of threads, at least 1.
+	 */
+	public static synchronized void setThreads(int count)
+	{
+		count = Math.max(1, count);
+		if(pool != null && count != threads)
+		{
+			pool.shutdown();
+			pool = null;
+		}
+		threads = count;
+	}
+
+	/**
+	 * Runs tasks on the shared threads and waits for them all to finish.
+	 * A single task is run on the calling thread.
+	 * If a task fails, or the calling thread is interrupted while waiting, the tasks still to finish are cancelled
+	 * and an exception is thrown, so callers never go on with only some of the work done.
+	 * @param tasks The tasks to run.
+	 * @throws CancellationException If the calling thread is interrupted, which it is left marked as.
+	 * @throws RuntimeException If a task fails, with the task's failure as its cause.
+	 */
+	public static void runAll(List<? extends Callable<Void>> tasks)
+	{
+		if(tasks.size() == 1)
+		{
+			call(tasks.get(0));
+			return;
+		}
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(tasks.size());
+		ExecutorService pool = getPool();
+		try
+		{
+			for(Callable<Void> task : tasks)
+			{
+				futures.add(pool.submit(task));
+			}
+			for(Future<Void> done : futures)
+			{
+				done.get();
+			}
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while waiting for parallel tasks");
+		}
+		catch(ExecutionException e)
+		{
+			throw new RuntimeException("Parallel task failed", e.getCause());
+		}
+		finally
+		{
+			for(Future<Void> future : futures)
+			{
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Runs a task on the calling thread, failing as runAll does.
+	 */
+	private static void call(Callable<Void> task)
+	{
+		try
+		{
+			task.call();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while running a task");
+		}
+		catch(RuntimeException e)
+		{
+			throw e;
+		}
+		catch(Exception e)
+		{
+			throw new RuntimeException("Parallel task failed", e);
+		}
+	}
+
+	private static synchronized ExecutorService getPool()
+	{
+		if(pool == null)
+		{
+			pool = Executors.newFixedThreadPool(threads, new ThreadFactory()
+			{
+				private int created = 0;
+
+				public Thread newThread(Runnable task)
+				{
+					Thread thread = new Thread(task, "worker-" + (created++));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return pool;
+	}
+}
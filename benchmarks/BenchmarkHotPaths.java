@@ -0,0 +1,371 @@
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import fishsim.benchmarks.HotPath;
+import fishsim.benchmarks.HotPaths;
+
+/**
+ * The hot paths of the simulation timed by the JMH benchmarks in fishsim.benchmarks, see HotPaths for why they are here.
+ * Every path works on a scene of a current and an updated ocean, populated from a fixed seed as Simulator.populate would,
+ * but with the given fraction of squares holding fish.
+ *
+ * @author Matthew Maglennon
+ */
+
+public class BenchmarkHotPaths extends HotPaths
+{
+	public static final long SEED = 2010;
+	private static final int SAMPLES = 1024; //Paths that visit locations cycle through this many, a power of 2
+	private static final int PAINT_SCALE = 2; //The width and height of a square when the ocean is painted, in pixels
+
+	public HotPath create(String name, String size, double density)
+	{
+		Scene scene = new Scene(size, density);
+		if(name.equals("adjacentLocations")) return new AdjacentLocations(scene);
+		if(name.equals("freeAdjacentLocation")) return new FreeAdjacentLocation(scene);
+		if(name.equals("calculateNearestToLeader")) return new CalculateNearestToLeader(scene);
+		if(name.equals("sharkChooseNextLocation")) return new SharkChooseNextLocation(scene);
+		if(name.equals("showStatus")) return new ShowStatus(scene);
+		if(name.equals("sharkAct")) return new Act(scene, Species.SHARK);
+		if(name.equals("herringAct")) return new Act(scene, Species.HERRING);
+		if(name.equals("groperAct")) return new Act(scene, Species.GROPER);
+		if(name.equals("regeneratePlankton")) return new RegeneratePlankton(scene);
+		if(name.equals("clearFish")) return new ClearFish(scene);
+		throw new IllegalArgumentException("No hot path called " + name);
+	}
+
+	/**
+	 * A seeded ocean at the start of a step, with its fish in the current ocean and the updated ocean empty.
+	 */
+	private static class Scene
+	{
+		private Ocean current;
+		private Ocean updated;
+		private List<Fish> fish; //Every fish, in the order they act
+		private Species species[]; //The species of each fish
+		private Location starts[]; //Where each fish started
+		private int ages[]; //The age each fish started with
+		private int hungers[]; //The hunger each fish started with
+		private Location samples[]; //Random locations for paths to visit
+
+		private Scene(String size, double density)
+		{
+			int x = size.indexOf('x');
+			int height = Integer.parseInt(size.substring(0, x));
+			int width = Integer.parseInt(size.substring(x + 1));
+			Randomizer.setSeed(SEED);
+			Random rand = Randomizer.getRandom();
+			current = new Ocean(height, width);
+			updated = new Ocean(height, width);
+			if(Shark.enableSharkAvoidance)
+			{
+				current.setSharkRepulsion(new RepulsionField(height, width, Shark.avoidanceRadius));
+				updated.setSharkRepulsion(new RepulsionField(height, width, Shark.avoidanceRadius));
+			}
+
+			//Species in about the same proportions as OceanSeeder
+			fish = new ArrayList<Fish>();
+			for(int row = 0; row < height; row++)
+			{
+				for(int col = 0; col < width; col++)
+				{
+					if(rand.nextDouble() >= density) continue;
+					Location location = new Location(row, col);
+					double species = rand.nextDouble();
+					Fish newFish;
+					if(species < 0.2) newFish = new Shark(true, location);
+					else if(species < 0.8) newFish = new Herring(true, location);
+					else newFish = new Groper(true, location);
+					fish.add(newFish);
+					current.addFish(newFish);
+				}
+			}
+			species = new Species[fish.size()];
+			starts = new Location[fish.size()];
+			ages = new int[fish.size()];
+			hungers = new int[fish.size()];
+			for(int f = 0; f < fish.size(); f++)
+			{
+				species[f] = fish.get(f).getSpecies();
+				starts[f] = fish.get(f).location;
+				ages[f] = fish.get(f).age;
+				hungers[f] = fish.get(f).hunger;
+			}
+			samples = new Location[SAMPLES];
+			for(int s = 0; s < SAMPLES; s++)
+			{
+				samples[s] = new Location(rand.nextInt(height), rand.nextInt(width));
+			}
+		}
+
+		/**
+		 * Replaces every fish with a new one where and as it started, so that nothing a fish remembers carries over,
+		 * refills the plankton and reseeds the random numbers.
+		 */
+		private void restore()
+		{
+			current.clearFish();
+			updated.clearFish();
+			for(int f = 0; f < fish.size(); f++)
+			{
+				Fish restored = species[f].createFish();
+				restored.setLocation(starts[f]);
+				restored.setAge(ages[f]);
+				restored.hunger = hungers[f];
+				fish.set(f, restored);
+				current.addFish(restored);
+			}
+			restorePlankton();
+			Randomizer.setSeed(SEED);
+		}
+
+		/**
+		 * Sets the plankton of both oceans back to the level a new ocean starts with.
+		 */
+		private void restorePlankton()
+		{
+			for(int row = 0; row < current.getHeight(); row++)
+			{
+				for(int col = 0; col < current.getWidth(); col++)
+				{
+					current.setPlanktonAt(row, col, Ocean.INITIAL_PLANKTON);
+					updated.setPlanktonAt(row, col, Ocean.INITIAL_PLANKTON);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Ocean.adjacentLocations around random locations.
+	 */
+	private static class AdjacentLocations implements HotPath
+	{
+		private Scene scene;
+		private int next;
+
+		private AdjacentLocations(Scene scene)
+		{
+			this.scene = scene;
+		}
+
+		public void reset()
+		{
+		}
+
+		public Object run()
+		{
+			return scene.current.adjacentLocations(scene.samples[next++ & (SAMPLES - 1)]);
+		}
+	}
+
+	/**
+	 * Ocean.freeAdjacentLocation around random locations of the populated ocean.
+	 */
+	private static class FreeAdjacentLocation implements HotPath
+	{
+		private Scene scene;
+		private int next;
+
+		private FreeAdjacentLocation(Scene scene)
+		{
+			this.scene = scene;
+		}
+
+		public void reset()
+		{
+		}
+
+		public Object run()
+		{
+			return scene.current.freeAdjacentLocation(scene.samples[next++ & (SAMPLES - 1)]);
+		}
+	}
+
+	/**
+	 * Herring.calculateNearestToLeader for herring at random locations, each following a leader up to 2 squares away.
+	 */
+	private static class CalculateNearestToLeader implements HotPath
+	{
+		private Herring herring[];
+		private Location leaders[];
+		private int next;
+
+		private CalculateNearestToLeader(Scene scene)
+		{
+			Random rand = Randomizer.getRandom();
+			herring = new Herring[SAMPLES];
+			leaders = new Location[SAMPLES];
+			for(int s = 0; s < SAMPLES; s++)
+			{
+				Location location = scene.samples[s];
+				herring[s] = new Herring(false, location);
+				herring[s].currentOcean = scene.current;
+				herring[s].updatedOcean = scene.current;
+				int row = Math.max(0, Math.min(scene.current.getHeight() - 1, location.getRow() + rand.nextInt(5) - 2));
+				int col = Math.max(0, Math.min(scene.current.getWidth() - 1, location.getCol() + rand.nextInt(5) - 2));
+				leaders[s] = new Location(row, col);
+			}
+		}
+
+		public void reset()
+		{
+		}
+
+		public Object run()
+		{
+			int s = next++ & (SAMPLES - 1);
+			return herring[s].calculateNearestToLeader(leaders[s]);
+		}
+	}
+
+	/**
+	 * Shark.chooseNextLocation for sharks at random locations of the populated ocean, avoiding the sharks in it.
+	 */
+	private static class SharkChooseNextLocation implements HotPath
+	{
+		private Shark sharks[];
+		private int next;
+
+		private SharkChooseNextLocation(Scene scene)
+		{
+			sharks = new Shark[SAMPLES];
+			for(int s = 0; s < SAMPLES; s++)
+			{
+				sharks[s] = new Shark(false, scene.samples[s]);
+				sharks[s].currentOcean = scene.current;
+				sharks[s].updatedOcean = scene.current;
+			}
+		}
+
+		public void reset()
+		{
+		}
+
+		public Object run()
+		{
+			return sharks[next++ & (SAMPLES - 1)].chooseNextLocation();
+		}
+	}
+
+	/**
+	 * SimulatorView.showStatus's painting and counting of the ocean, onto an image instead of a window.
+	 * After the first painting only tiles that are not at rest are painted, as in the simulator.
+	 */
+	private static class ShowStatus implements HotPath
+	{
+		private Scene scene;
+		private OceanPainter painter;
+		private OceanStats stats;
+
+		private ShowStatus(Scene scene)
+		{
+			this.scene = scene;
+			BufferedImage image = new BufferedImage(scene.current.getWidth() * PAINT_SCALE, scene.current.getHeight() * PAINT_SCALE, BufferedImage.TYPE_INT_RGB);
+			painter = new OceanPainter();
+			painter.setTarget(image.getGraphics(), PAINT_SCALE, PAINT_SCALE);
+			stats = new OceanStats();
+		}
+
+		public void reset()
+		{
+		}
+
+		public Object run()
+		{
+			stats.reset();
+			painter.paint(scene.current, stats);
+			stats.countFinished();
+			return stats;
+		}
+	}
+
+	/**
+	 * Fish.act for every fish of one species in the scene, each fish's life cycle checked first as a LifeCycle would
+	 * in the steps it is due.
+	 */
+	private static class Act implements HotPath
+	{
+		private Scene scene;
+		private Species species;
+		private List<Fish> actors; //The fish of the species
+		private List<Actor> newActors;
+
+		private Act(Scene scene, Species species)
+		{
+			this.scene = scene;
+			this.species = species;
+			actors = new ArrayList<Fish>();
+			newActors = new ArrayList<Actor>();
+		}
+
+		public void reset()
+		{
+			scene.restore();
+			actors.clear();
+			for(Fish fish : scene.fish)
+			{
+				if(fish.getSpecies() == species) actors.add(fish);
+			}
+			newActors.clear();
+		}
+
+		public Object run()
+		{
+			for(Fish fish : actors)
+			{
+				if(fish.isAlive() && !fish.updateLifeCycle()) fish.act(scene.current, scene.updated, newActors);
+			}
+			return newActors;
+		}
+	}
+
+	/**
+	 * Ocean.regeneratePlankton from the level a new ocean starts with, so that no tile is skipped.
+	 */
+	private static class RegeneratePlankton implements HotPath
+	{
+		private Scene scene;
+
+		private RegeneratePlankton(Scene scene)
+		{
+			this.scene = scene;
+		}
+
+		public void reset()
+		{
+			scene.restorePlankton();
+		}
+
+		public Object run()
+		{
+			scene.updated.regeneratePlankton();
+			return scene.updated;
+		}
+	}
+
+	/**
+	 * Ocean.clearFish of the populated ocean.
+	 */
+	private static class ClearFish implements HotPath
+	{
+		private Scene scene;
+
+		private ClearFish(Scene scene)
+		{
+			this.scene = scene;
+		}
+
+		public void reset()
+		{
+			scene.restore();
+		}
+
+		public Object run()
+		{
+			scene.current.clearFish();
+			return scene.current;
+		}
+	}
+}
@@ -0,0 +1,346 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs whole simulations headless from a fixed seed and measures them end to end, where the JMH benchmarks time single operations.
+ * Every scenario is an ocean size with or without rocks on a number of worker threads, and each is measured for
+ * steps per second, the 50th and 99th percentile time of a step, the bytes allocated per second and per step, and the peak heap.
+ * The results are written as JSON, along with curves of steps per second against ocean size and against the number of threads.
+ *
+ * Worker threads only matter to the parallel stages, so the thread curves are flat unless hunting or currents are on.
+ *
+ * Arguments are name=value pairs, each optional:
+ *   steps=200             steps measured in each scenario, after the warmup
+ *   warmup=20             steps run before measuring, so the JIT compiler has settled
+ *   sizes=50x60,150x180,170x204,1000x1000,4000x4000
+ *   rocks=off,on
+ *   threads=N,...         worker thread counts, by default the number of processors
+ *   ocean=DENSE           the OceanType of every scenario
+ *   hunting=0             Shark.huntingRange and Groper.huntingRange
+ *   currents=off          on to move plankton with a PlanktonTransport
+ *   sort=0                Simulator.sortActorsPeriod, the steps between putting the actors in SpatialOrder
+ *   intents=off           on to act through an IntentPipeline, so that fish decide in parallel
+ *   single=off            on to set Simulator.singleBuffer, updating one ocean in place
+ *   seed=2010
+ *   out=scenarios.json    where the report is written
+ *
+ * @author Matthew Maglennon
+ */
+
+public class ScenarioBenchmark
+{
+	private static final float DIFFUSION = 0.05f; //The plankton transport used when currents are on
+	private static final float ROW_SPEED = 0.1f;
+	private static final float COL_SPEED = 0.05f;
+	private static final int ROCK_SPACING = 10; //With rocks on, one rock is scattered in each segment of about this many squares across
+
+	private int steps = 200;
+	private int warmup = 20;
+	private String sizes[] = {"50x60", "150x180", "170x204", "1000x1000", "4000x4000"};
+	private String rocks[] = {"off", "on"};
+	private int threads[] = {Runtime.getRuntime().availableProcessors()};
+	private OceanType oceanType = OceanType.DENSE;
+	private int huntingRange = 0;
+	private boolean currents = false;
+	private int sortPeriod = 0;
+	private boolean intents = false;
+	private boolean single = false;
+	private long seed = 2010;
+	private String out = "scenarios.json";
+
+	private com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) throws IOException
+	{
+		ScenarioBenchmark benchmark = new ScenarioBenchmark();
+		benchmark.parse(args);
+		benchmark.runAll();
+	}
+
+	/**
+	 * Reads the name=value arguments.
+	 */
+	private void parse(String[] args)
+	{
+		for(String arg : args)
+		{
+			int equals = arg.indexOf('=');
+			if(equals < 0) throw new IllegalArgumentException("Expected name=value, got " + arg);
+			String name = arg.substring(0, equals);
+			String value = arg.substring(equals + 1);
+			if(name.equals("steps")) steps = Integer.parseInt(value);
+			else if(name.equals("warmup")) warmup = Integer.parseInt(value);
+			else if(name.equals("sizes")) sizes = value.split(",");
+			else if(name.equals("rocks")) rocks = value.split(",");
+			else if(name.equals("threads"))
+			{
+				String counts[] = value.split(",");
+				threads = new int[counts.length];
+				for(int t = 0; t < counts.length; t++)
+				{
+					threads[t] = Integer.parseInt(counts[t]);
+				}
+			}
+			else if(name.equals("ocean")) oceanType = OceanType.valueOf(value);
+			else if(name.equals("hunting")) huntingRange = Integer.parseInt(value);
+			else if(name.equals("currents")) currents = value.equals("on");
+			else if(name.equals("sort")) sortPeriod = Integer.parseInt(value);
+			else if(name.equals("intents")) intents = value.equals("on");
+			else if(name.equals("single")) single = value.equals("on");
+			else if(name.equals("seed")) seed = Long.parseLong(value);
+			else if(name.equals("out")) out = value;
+			else throw new IllegalArgumentException("Unknown argument " + name);
+		}
+	}
+
+	/**
+	 * Runs every scenario, printing each result as it finishes, then writes the report.
+	 */
+	private void runAll() throws IOException
+	{
+		List<Result> results = new ArrayList<Result>();
+		for(String size : sizes)
+		{
+			for(String rock : rocks)
+			{
+				for(int threadCount : threads)
+				{
+					Result result = run(size, rock.equals("on"), threadCount);
+					System.out.println(result);
+					results.add(result);
+				}
+			}
+		}
+		writeReport(results);
+		System.out.println("Report written to " + out);
+	}
+
+	/**
+	 * Runs and measures one scenario.
+	 */
+	private Result run(String size, boolean withRocks, int threadCount)
+	{
+		int x = size.indexOf('x');
+		int height = Integer.parseInt(size.substring(0, x));
+		int width = Integer.parseInt(size.substring(x + 1));
+
+		//Start every scenario from the same seed, with the garbage of the last one collected
+		System.gc();
+		Workers.setThreads(threadCount);
+		Randomizer.setSeed(seed);
+		Simulator sim = new Simulator(height, width, oceanType, true);
+		Shark.huntingRange = huntingRange;
+		Groper.huntingRange = huntingRange;
+		Simulator.sortActorsPeriod = sortPeriod;
+		Simulator.intentPipeline = intents;
+		Simulator.singleBuffer = single;
+		Simulator.planktonTransport = currents ? new PlanktonTransport(DIFFUSION, ROW_SPEED, COL_SPEED) : null;
+		Simulator.randomRocks = withRocks ? Math.max(1, Math.min(height, width) / ROCK_SPACING) : 0;
+		sim.setUp();
+
+		for(int s = 0; s < warmup && sim.isViable(); s++)
+		{
+			sim.step();
+		}
+
+		Result result = new Result(size, height * width, withRocks, threadCount);
+		long stepTimes[] = new long[steps];
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			pool.resetPeakUsage();
+		}
+		Map<Long, Long> allocatedBefore = allocatedBytes();
+		long start = System.nanoTime();
+		int measured = 0;
+		while(measured < steps && sim.isViable())
+		{
+			long stepStart = System.nanoTime();
+			sim.step();
+			stepTimes[measured++] = System.nanoTime() - stepStart;
+		}
+		long elapsed = System.nanoTime() - start;
+		Map<Long, Long> allocatedAfter = allocatedBytes();
+
+		//Bytes allocated by every thread, including worker threads started while measuring
+		long allocated = 0;
+		for(Map.Entry<Long, Long> thread : allocatedAfter.entrySet())
+		{
+			Long before = allocatedBefore.get(thread.getKey());
+			allocated += thread.getValue() - (before == null ? 0 : before);
+		}
+		long peakHeap = 0;
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if(pool.getType() == MemoryType.HEAP) peakHeap += pool.getPeakUsage().getUsed();
+		}
+
+		result.steps = measured;
+		result.viable = sim.isViable();
+		result.actors = sim.getActorCount();
+		double seconds = elapsed / 1e9;
+		result.stepsPerSecond = measured / seconds;
+		long sorted[] = Arrays.copyOf(stepTimes, measured);
+		Arrays.sort(sorted);
+		result.p50Millis = percentile(sorted, 0.50) / 1e6;
+		result.p99Millis = percentile(sorted, 0.99) / 1e6;
+		result.allocatedBytesPerSecond = allocated / seconds;
+		result.allocatedBytesPerStep = measured == 0 ? 0 : allocated / measured;
+		result.peakHeapBytes = peakHeap;
+		return result;
+	}
+
+	/**
+	 * @return The bytes allocated so far by each live thread, by thread id.
+	 */
+	private Map<Long, Long> allocatedBytes()
+	{
+		long ids[] = threadBean.getAllThreadIds();
+		long bytes[] = threadBean.getThreadAllocatedBytes(ids);
+		Map<Long, Long> allocated = new HashMap<Long, Long>();
+		for(int t = 0; t < ids.length; t++)
+		{
+			if(bytes[t] >= 0) allocated.put(ids[t], bytes[t]);
+		}
+		return allocated;
+	}
+
+	/**
+	 * @return The value at a fraction of the way through sorted values, by the nearest rank, or 0 if there are none.
+	 */
+	private static long percentile(long sorted[], double fraction)
+	{
+		if(sorted.length == 0) return 0;
+		int rank = (int) Math.ceil(fraction * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	/**
+	 * Writes the configuration, every result, and the curves drawn from them as JSON.
+	 * There is a size curve for each rocks setting and thread count, and a thread curve for each size and rocks setting.
+	 */
+	private void writeReport(List<Result> results) throws IOException
+	{
+		PrintWriter writer = new PrintWriter(new FileWriter(out));
+		try
+		{
+			writer.println("{");
+			writer.println("  \"config\": {\"steps\": " + steps + ", \"warmup\": " + warmup + ", \"seed\": " + seed
+				+ ", \"ocean\": \"" + oceanType + "\", \"hunting\": " + huntingRange + ", \"currents\": " + currents + ", \"sort\": " + sortPeriod + ", \"intents\": " + intents + ", \"single\": " + single
+				+ ", \"processors\": " + Runtime.getRuntime().availableProcessors()
+				+ ", \"java\": \"" + System.getProperty("java.version") + "\"},");
+
+			writer.println("  \"scenarios\": [");
+			for(int r = 0; r < results.size(); r++)
+			{
+				writer.println("    " + results.get(r).toJson() + (r < results.size() - 1 ? "," : ""));
+			}
+			writer.println("  ],");
+
+			List<String> curves = new ArrayList<String>();
+			for(String rock : rocks)
+			{
+				for(int threadCount : threads)
+				{
+					StringBuffer points = new StringBuffer();
+					for(Result result : results)
+					{
+						if(result.withRocks != rock.equals("on") || result.threads != threadCount) continue;
+						if(points.length() > 0) points.append(", ");
+						points.append(String.format(Locale.ROOT, "{\"size\": \"%s\", \"squares\": %d, \"stepsPerSecond\": %.2f}", result.size, result.squares, result.stepsPerSecond));
+					}
+					curves.add("{\"rocks\": \"" + rock + "\", \"threads\": " + threadCount + ", \"points\": [" + points + "]}");
+				}
+			}
+			writeArray(writer, "throughputBySize", curves, true);
+
+			curves.clear();
+			for(String size : sizes)
+			{
+				for(String rock : rocks)
+				{
+					StringBuffer points = new StringBuffer();
+					for(Result result : results)
+					{
+						if(!result.size.equals(size) || result.withRocks != rock.equals("on")) continue;
+						if(points.length() > 0) points.append(", ");
+						points.append(String.format(Locale.ROOT, "{\"threads\": %d, \"stepsPerSecond\": %.2f}", result.threads, result.stepsPerSecond));
+					}
+					curves.add("{\"size\": \"" + size + "\", \"rocks\": \"" + rock + "\", \"points\": [" + points + "]}");
+				}
+			}
+			writeArray(writer, "throughputByThreads", curves, false);
+			writer.println("}");
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	/**
+	 * Writes a named JSON array, one element to a line.
+	 */
+	private static void writeArray(PrintWriter writer, String name, List<String> elements, boolean more)
+	{
+		writer.println("  \"" + name + "\": [");
+		for(int e = 0; e < elements.size(); e++)
+		{
+			writer.println("    " + elements.get(e) + (e < elements.size() - 1 ? "," : ""));
+		}
+		writer.println("  ]" + (more ? "," : ""));
+	}
+
+	/**
+	 * The measurements of one scenario.
+	 */
+	private static class Result
+	{
+		private String size;
+		private int squares;
+		private boolean withRocks;
+		private int threads;
+		private int steps; //Steps measured, fewer than asked for if the ocean stopped being viable
+		private boolean viable; //Whether the ocean was still viable at the end
+		private int actors; //Actors at the end
+		private double stepsPerSecond;
+		private double p50Millis;
+		private double p99Millis;
+		private double allocatedBytesPerSecond;
+		private long allocatedBytesPerStep;
+		private long peakHeapBytes; //The sum of the peak use of each heap memory pool
+
+		private Result(String size, int squares, boolean withRocks, int threads)
+		{
+			this.size = size;
+			this.squares = squares;
+			this.withRocks = withRocks;
+			this.threads = threads;
+		}
+
+		private String toJson()
+		{
+			return String.format(Locale.ROOT, "{\"size\": \"%s\", \"squares\": %d, \"rocks\": \"%s\", \"threads\": %d, \"steps\": %d, \"viable\": %b, \"actors\": %d, "
+				+ "\"stepsPerSecond\": %.2f, \"p50Millis\": %.3f, \"p99Millis\": %.3f, "
+				+ "\"allocatedBytesPerSecond\": %.0f, \"allocatedBytesPerStep\": %d, \"peakHeapBytes\": %d}",
+				size, squares, withRocks ? "on" : "off", threads, steps, viable, actors,
+				stepsPerSecond, p50Millis, p99Millis, allocatedBytesPerSecond, allocatedBytesPerStep, peakHeapBytes);
+		}
+
+		public String toString()
+		{
+			return String.format("%-10s rocks %-3s %2d threads: %4d steps, %8.1f steps/s, p50 %7.2fms, p99 %7.2fms, %7.1f MB/s allocated, %6.1f MB peak heap",
+				size, withRocks ? "on" : "off", threads, steps, stepsPerSecond, p50Millis, p99Millis,
+				allocatedBytesPerSecond / (1 << 20), peakHeapBytes / (double) (1 << 20));
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package fishsim.benchmarks;
+
+/**
+ * One operation of the simulation to be timed, set up by HotPaths.
+ *
+ * @author Matthew Maglennon
+ */
+
+public interface HotPath
+{
+	/**
+	 * Puts the simulation back to the state it was created in, for operations that change it.
+	 */
+	void reset();
+
+	/**
+	 * Performs the operation once.
+	 * @return Anything the operation produced, so that it is not optimised away.
+	 */
+	Object run();
+}
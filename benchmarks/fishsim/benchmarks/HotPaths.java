@@ -0,0 +1,37 @@
+package fishsim.benchmarks;
+
+/**
+ * Creates the hot paths timed by the benchmarks.
+ * JMH will not generate benchmarks in the default package, and classes in a named package cannot use the simulation's classes,
+ * which are all in the default package. So the benchmarks are here, and time operations set up by BenchmarkHotPaths in the default package,
+ * which is loaded by name. Calling an operation through HotPath costs one interface call, which the JIT compiler inlines.
+ *
+ * @author Matthew Maglennon
+ */
+
+public abstract class HotPaths
+{
+	/**
+	 * Creates a hot path in a seeded ocean, so that every run times the same work.
+	 * @param name The name of the hot path, the name of the method it times.
+	 * @param size The size of the ocean as height x width, for example 150x180.
+	 * @param density The fraction of the ocean's squares that have fish in them.
+	 * @return The hot path.
+	 */
+	public abstract HotPath create(String name, String size, double density);
+
+	/**
+	 * @return The hot paths of the simulation.
+	 */
+	public static HotPaths load()
+	{
+		try
+		{
+			return (HotPaths) Class.forName("BenchmarkHotPaths").getDeclaredConstructor().newInstance();
+		}
+		catch(ReflectiveOperationException e)
+		{
+			throw new IllegalStateException("Cannot load BenchmarkHotPaths", e);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package fishsim.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of operations that leave the ocean as they found it, so can be repeated back to back.
+ * Each is run at every ocean size and density, for example
+ *     java -jar target/benchmarks.jar OceanBenchmarks -p path=freeAdjacentLocation -prof gc
+ *
+ * @author Matthew Maglennon
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OceanBenchmarks
+{
+	@Param({"adjacentLocations", "freeAdjacentLocation", "calculateNearestToLeader", "sharkChooseNextLocation", "showStatus"})
+	public String path;
+
+	@Param({"50x60", "150x180", "1000x1000"})
+	public String size;
+
+	@Param({"0.01", "0.05", "0.2"})
+	public double density;
+
+	private HotPath hotPath;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		hotPath = HotPaths.load().create(path, size, density);
+	}
+
+	@Benchmark
+	public Object run()
+	{
+		return hotPath.run();
+	}
+}
@@ -0,0 +1,62 @@
+package fishsim.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the parts of a step that change the ocean. The ocean is put back before each operation, outside the timing.
+ * The act paths time every fish of one species acting once, so divide by the number of those fish for the time per fish.
+ * Operations on the smallest oceans are short enough that JMH's per operation set up adds noticeably to them.
+ *
+ * @author Matthew Maglennon
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StepBenchmarks
+{
+	@Param({"sharkAct", "herringAct", "groperAct", "regeneratePlankton", "clearFish"})
+	public String path;
+
+	@Param({"50x60", "150x180", "1000x1000"})
+	public String size;
+
+	@Param({"0.01", "0.05", "0.2"})
+	public double density;
+
+	private HotPath hotPath;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		hotPath = HotPaths.load().create(path, size, density);
+	}
+
+	@Setup(Level.Invocation)
+	public void reset()
+	{
+		hotPath.reset();
+	}
+
+	@Benchmark
+	public Object run()
+	{
+		return hotPath.run();
+	}
+}